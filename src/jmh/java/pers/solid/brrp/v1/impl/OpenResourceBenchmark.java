@@ -0,0 +1,89 @@
+package pers.solid.brrp.v1.impl;
+
+import net.minecraft.resource.InputSupplier;
+import net.minecraft.util.Identifier;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Measures the allocations of opening resources, comparing the input suppliers kept by {@link PayloadSupplier} with the lambdas created for each lookup, and root resources keyed by joined paths with root resources keyed by lists of segments, which were used by runtime resource packs before. Run with {@code gradlew jmh}, whose gc profiler reports {@code gc.alloc.rate.norm} in bytes per operation.
+ * <p>The content is allocated once in {@link #setup()} and shared by both variants, so that the difference of {@code gc.alloc.rate.norm} is only the input supplier created for each lookup. The variants that read also allocate the stream, which is the same for both.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OpenResourceBenchmark {
+  private static final Identifier ID = Identifier.of("mod0", "models/block/entry.json");
+
+  private Map<Identifier, Supplier<byte[]>> entries;
+  private Map<Identifier, byte[]> contents;
+  private Map<String, Supplier<byte[]>> rootByPath;
+  private Map<List<String>, Supplier<byte[]>> rootBySegments;
+
+  @Setup
+  public void setup() {
+    final byte[] content = new byte[256];
+    Arrays.fill(content, (byte) '{');
+    final PayloadSupplier supplier = new PayloadSupplier(ResourcePayload.of(content, -1));
+    entries = new HashMap<>();
+    entries.put(ID, supplier);
+    contents = new HashMap<>();
+    contents.put(ID, content);
+    rootByPath = new HashMap<>();
+    rootByPath.put("pack.mcmeta", supplier);
+    rootBySegments = new HashMap<>();
+    rootBySegments.put(List.of("pack.mcmeta"), supplier);
+  }
+
+  @Benchmark
+  public InputSupplier<InputStream> keptInputSupplier() {
+    return ((OpenableResourceSupplier) entries.get(ID)).inputSupplier();
+  }
+
+  @Benchmark
+  public InputSupplier<InputStream> lambdaInputSupplier() {
+    final byte[] content = contents.get(ID);
+    return () -> new ByteArrayInputStream(content);
+  }
+
+  @Benchmark
+  public void keptInputSupplierRead(Blackhole blackhole) throws IOException {
+    try (InputStream stream = ((OpenableResourceSupplier) entries.get(ID)).inputSupplier().get()) {
+      blackhole.consume(stream.read());
+    }
+  }
+
+  @Benchmark
+  public void lambdaInputSupplierRead(Blackhole blackhole) throws IOException {
+    final byte[] content = contents.get(ID);
+    final InputSupplier<InputStream> inputSupplier = () -> new ByteArrayInputStream(content);
+    try (InputStream stream = inputSupplier.get()) {
+      blackhole.consume(stream.read());
+    }
+  }
+
+  @Benchmark
+  public Supplier<byte[]> rootByPath() {
+    final String[] segments = {"pack.mcmeta"};
+    return rootByPath.get(segments.length == 1 ? segments[0] : String.join("/", segments));
+  }
+
+  @Benchmark
+  public Supplier<byte[]> rootBySegments() {
+    final String[] segments = {"pack.mcmeta"};
+    return rootBySegments.get(Arrays.asList(segments));
+  }
+}
@@ -0,0 +1,92 @@
+package pers.solid.brrp.v1.impl;
+
+import net.minecraft.util.Identifier;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Compares the namespace and path index of {@link ResourceStorage} with the linear scan of a flat map, which was used by runtime resource packs before the index was added.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResourceStorageBenchmark {
+  private static final String[] DIRECTORIES = {"blockstates", "models/block", "models/item", "textures/block", "recipe", "loot_table/blocks", "advancement/recipes", "tags/block"};
+  private static final int NAMESPACES = 8;
+
+  @Param({"10000", "80000"})
+  public int size;
+
+  private ResourceStorage storage;
+  private Map<Identifier, Supplier<byte[]>> flat;
+
+  @Setup
+  public void setup() {
+    storage = new ResourceStorage();
+    flat = new ConcurrentHashMap<>();
+    final Supplier<byte[]> supplier = () -> new byte[0];
+    for (int i = 0; i < size; i++) {
+      final Identifier id = Identifier.of("mod" + i % NAMESPACES, DIRECTORIES[i / NAMESPACES % DIRECTORIES.length] + "/entry_" + i + ".json");
+      storage.put(id, supplier);
+      flat.put(id, supplier);
+    }
+  }
+
+  @Benchmark
+  public void indexedFindResources(Blackhole blackhole) {
+    storage.findResources("mod0", "recipe/", (id, supplier) -> blackhole.consume(id));
+  }
+
+  @Benchmark
+  public void linearFindResources(Blackhole blackhole) {
+    for (Map.Entry<Identifier, Supplier<byte[]>> entry : flat.entrySet()) {
+      final Identifier id = entry.getKey();
+      if (id.getNamespace().equals("mod0") && id.getPath().startsWith("recipe/")) {
+        blackhole.consume(id);
+      }
+    }
+  }
+
+  @Benchmark
+  public Set<String> indexedGetNamespaces() {
+    return storage.getNamespaces();
+  }
+
+  @Benchmark
+  public Set<String> linearGetNamespaces() {
+    final Set<String> namespaces = new HashSet<>();
+    for (Identifier id : flat.keySet()) {
+      namespaces.add(id.getNamespace());
+    }
+    return namespaces;
+  }
+
+  @Benchmark
+  public void sealedFindResources(SealedState state, Blackhole blackhole) {
+    state.storage.findResources("mod0", "recipe/", (id, supplier) -> blackhole.consume(id));
+  }
+
+  @State(Scope.Benchmark)
+  public static class SealedState {
+    private ResourceStorage storage;
+
+    @Setup
+    public void setup(ResourceStorageBenchmark benchmark) {
+      storage = new ResourceStorage();
+      for (Map.Entry<Identifier, Supplier<byte[]>> entry : benchmark.flat.entrySet()) {
+        storage.put(entry.getKey(), entry.getValue());
+      }
+      storage.seal();
+    }
+  }
+}
@@ -2,12 +2,16 @@ package pers.solid.brrp.v1;
 
 import dev.architectury.injectables.annotations.ExpectPlatform;
 import net.minecraft.resource.ResourceType;
+import net.minecraft.util.Util;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import pers.solid.brrp.v1.api.RuntimeResourcePack;
+import pers.solid.brrp.v1.impl.MemoizedPackFunction;
 
 import java.util.Collection;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
 import java.util.function.Function;
 
 /**
@@ -65,4 +69,48 @@ public abstract class RRPEventHelper {
    * Register a function that return a collection of resource packs. Each time loading resources, the function will be applied, taking the resourceType as the parameter. Like {@link #registerPack(Function)}, you can make it generate resources each time loading resources. The collection returned may be empty, but should not be null.
    */
   public abstract void registerPacks(@NotNull Function<ResourceType, @NotNull Collection<RuntimeResourcePack>> packsFunction);
+
+  /**
+   * <p>Register a resource pack function whose result is reused when loading resources again, as long as the invalidation key is not changed. The key describes everything the pack depends on, such as a generation counter, the hash of the config, or the set of enabled features. If the key is equal to the key of the last call for the same resource type, the pack built last time is used directly, so reloading resources, such as pressing F3+T or running {@code /reload}, does not regenerate it.</p>
+   * <p>The pack function can return {@code null}, which means the pack will not be added, and the {@code null} result is also reused.</p>
+   *
+   * @param keyFunction  The function to get the current invalidation key of the resource type, which is called each time loading resources, so it should be cheap.
+   * @param packFunction The function to build the pack with the resource type and the key, called only if the key is changed.
+   * @param <K>          The type of the invalidation key, which should implement {@link Object#equals(Object)} properly.
+   */
+  @ApiStatus.AvailableSince("1.1.0")
+  public <K> void registerCachedPack(@NotNull Function<ResourceType, K> keyFunction, @NotNull BiFunction<ResourceType, K, @Nullable RuntimeResourcePack> packFunction) {
+    registerPack(new MemoizedPackFunction<>(keyFunction, packFunction));
+  }
+
+  /**
+   * Register a function that returns a collection of resource packs, whose result is reused when loading resources again, as long as the invalidation key is not changed. See {@link #registerCachedPack(Function, BiFunction)} for details.
+   *
+   * @param keyFunction   The function to get the current invalidation key of the resource type, which is called each time loading resources, so it should be cheap.
+   * @param packsFunction The function to build the packs with the resource type and the key, called only if the key is changed. The collection returned may be empty, but should not be null.
+   * @param <K>           The type of the invalidation key, which should implement {@link Object#equals(Object)} properly.
+   */
+  @ApiStatus.AvailableSince("1.1.0")
+  public <K> void registerCachedPacks(@NotNull Function<ResourceType, K> keyFunction, @NotNull BiFunction<ResourceType, K, @NotNull Collection<RuntimeResourcePack>> packsFunction) {
+    registerPacks(new MemoizedPackFunction<>(keyFunction, packsFunction));
+  }
+
+  /**
+   * <p>Register a resource pack whose resources are generated in the background each time loading resources, instead of being generated when the mod is initialized or when the pack is registered. The generation runs on the main worker executor of Minecraft, which prepares resource reloads, so it overlaps with the loading of other resource packs, and reading resources waits only if they have not been generated yet. See {@link RuntimeResourcePack#generateInBackground} for details.</p>
+   * <p>Before each generation, the resources of the type being loaded are cleared.</p>
+   *
+   * @param pack       The pack to register.
+   * @param namespaces The namespaces of resources that will be generated, which should be declared as resource managers get the namespaces before the generation completes.
+   * @param generator  The function to generate resources of the specific type in the pack. It is called in the background.
+   */
+  @ApiStatus.AvailableSince("1.1.0")
+  public void registerBackgroundPack(@NotNull RuntimeResourcePack pack, @NotNull Collection<String> namespaces, @NotNull BiConsumer<ResourceType, RuntimeResourcePack> generator) {
+    registerPack(type -> {
+      pack.generateInBackground(Util.getMainWorkerExecutor(), namespaces, p -> {
+        p.clearResources(type);
+        generator.accept(type, p);
+      });
+      return pack;
+    });
+  }
 }
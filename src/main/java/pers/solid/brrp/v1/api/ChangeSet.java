@@ -0,0 +1,61 @@
+package pers.solid.brrp.v1.api;
+
+import net.minecraft.resource.ResourceType;
+import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.Set;
+
+/**
+ * <p>The resources changed by regenerating a runtime resource pack, returned by {@link RuntimeResourcePack#regenerateWithChanges()} and {@link RuntimeResourcePack#regenerateSidedWithChanges(ResourceType)}.</p>
+ * <p>Resources whose contents are already known are compared by the fingerprints of their contents, and unchanged ones keep their previous storage. Lazy, async and immediate resources are compared by identity, as comparing them requires evaluating them, so they are usually reported as modified if they are added again.</p>
+ *
+ * @param clientResources The changes of client resources.
+ * @param serverData      The changes of server data.
+ * @param rootResources   The changes of root resources, whose keys are paths such as {@code "pack.mcmeta"}.
+ */
+@ApiStatus.AvailableSince("1.1.0")
+public record ChangeSet(Changes<Identifier> clientResources, Changes<Identifier> serverData, Changes<String> rootResources) {
+  /**
+   * @return The changes of the resource type.
+   */
+  public Changes<Identifier> of(ResourceType type) {
+    return type == ResourceType.CLIENT_RESOURCES ? clientResources : serverData;
+  }
+
+  /**
+   * @return Whether no resources are added, removed or modified.
+   */
+  public boolean isEmpty() {
+    return clientResources.isEmpty() && serverData.isEmpty() && rootResources.isEmpty();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("client resources: %s; server data: %s; root resources: %s", clientResources, serverData, rootResources);
+  }
+
+  /**
+   * The changes of one kind of resources.
+   *
+   * @param added     The keys of resources that did not exist before the regeneration.
+   * @param removed   The keys of resources that no longer exist after the regeneration.
+   * @param modified  The keys of resources whose contents are changed, or may be changed.
+   * @param unchanged The number of resources that are not changed.
+   * @param <K>       The type of the keys of resources.
+   */
+  public record Changes<K>(Set<K> added, Set<K> removed, Set<K> modified, int unchanged) {
+    public static <K> Changes<K> empty() {
+      return new Changes<>(Set.of(), Set.of(), Set.of(), 0);
+    }
+
+    public boolean isEmpty() {
+      return added.isEmpty() && removed.isEmpty() && modified.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%d added, %d removed, %d modified, %d unchanged", added.size(), removed.size(), modified.size(), unchanged);
+    }
+  }
+}
@@ -0,0 +1,25 @@
+package pers.solid.brrp.v1.api;
+
+import org.jetbrains.annotations.ApiStatus;
+
+/**
+ * The stats of the compressed resources in a runtime resource pack, returned by {@link RuntimeResourcePack#getCompressionStats()}.
+ *
+ * @param compressedEntries The number of resources stored in compressed form.
+ * @param originalBytes     The total length of these resources before compressing.
+ * @param compressedBytes   The total length of these resources after compressing.
+ */
+@ApiStatus.AvailableSince("1.1.0")
+public record CompressionStats(long compressedEntries, long originalBytes, long compressedBytes) {
+  /**
+   * @return The compressed size divided by the original size, such as {@code 0.1} if resources are compressed to a tenth. If no resources are compressed, it is {@code 1}.
+   */
+  public double ratio() {
+    return originalBytes == 0 ? 1 : (double) compressedBytes / originalBytes;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%d compressed entries, %d -> %d bytes (ratio %.3f)", compressedEntries, originalBytes, compressedBytes, ratio());
+  }
+}
@@ -0,0 +1,26 @@
+package pers.solid.brrp.v1.api;
+
+import org.jetbrains.annotations.ApiStatus;
+
+/**
+ * The kind of executor that runs async resources and tasks of runtime resource packs. See {@link RuntimeResourcePack#configureExecutor(ExecutorMode, int, int)}.
+ */
+@ApiStatus.AvailableSince("1.1.0")
+public enum ExecutorMode {
+  /**
+   * A fixed pool of daemon threads owned by BRRP, sized by the parallelism. It is the default mode.
+   */
+  FIXED_POOL,
+  /**
+   * The main worker executor of Minecraft, which is shared with the game. The parallelism is ignored.
+   */
+  MAIN_WORKER,
+  /**
+   * A fork/join pool owned by BRRP, sized by the parallelism, which is suitable for CPU-heavy tasks that split into smaller tasks.
+   */
+  FORK_JOIN,
+  /**
+   * A new virtual thread for each task, which is suitable for I/O-heavy tasks, such as reading files or downloading. The parallelism is ignored.
+   */
+  VIRTUAL_THREADS
+}
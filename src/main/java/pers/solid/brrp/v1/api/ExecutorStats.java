@@ -0,0 +1,18 @@
+package pers.solid.brrp.v1.api;
+
+import org.jetbrains.annotations.ApiStatus;
+
+/**
+ * The current state of the executor that runs async resources and tasks of runtime resource packs, returned by {@link RuntimeResourcePack#getExecutorStats()}.
+ *
+ * @param mode            The kind of the executor.
+ * @param parallelism     The number of threads of the executor, which is meaningful only for {@link ExecutorMode#FIXED_POOL} and {@link ExecutorMode#FORK_JOIN}.
+ * @param maxPendingTasks The maximum number of tasks that are queued or running. When it is reached, new tasks run in the thread that submits them.
+ * @param queuedTasks     The number of tasks that are submitted but not started.
+ * @param activeTasks     The number of tasks that are running.
+ * @param completedTasks  The number of tasks that have completed, including those that run in the submitting thread.
+ * @param callerRunTasks  The number of tasks that run in the submitting thread because too many tasks are pending. Tasks submitted by the render thread or by tasks of the executor never run in the submitting thread.
+ */
+@ApiStatus.AvailableSince("1.1.0")
+public record ExecutorStats(ExecutorMode mode, int parallelism, int maxPendingTasks, int queuedTasks, int activeTasks, long completedTasks, long callerRunTasks) {
+}
@@ -0,0 +1,52 @@
+package pers.solid.brrp.v1.api;
+
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The exception thrown when some elements fail to generate in {@link RuntimeResourcePack#parallelGenerate}. It contains the failures of all elements, so that all problems can be seen at once instead of only the first one. The first failure is the cause, and other failures are suppressed.
+ */
+@ApiStatus.AvailableSince("1.1.0")
+public class GenerationException extends RuntimeException {
+  /**
+   * The maximum number of failed elements shown in the message.
+   */
+  private static final int MAX_ELEMENTS_IN_MESSAGE = 10;
+  private final List<Failure> failures;
+
+  /**
+   * @param packName The name of the pack, used in the message.
+   * @param total    The total number of elements to generate.
+   * @param failures The failures, which should not be empty.
+   */
+  public GenerationException(String packName, int total, List<Failure> failures) {
+    super(createMessage(packName, total, failures), failures.isEmpty() ? null : failures.get(0).cause());
+    this.failures = List.copyOf(failures);
+    for (int i = 1; i < failures.size(); i++) {
+      addSuppressed(failures.get(i).cause());
+    }
+  }
+
+  private static String createMessage(String packName, int total, List<Failure> failures) {
+    final String elements = failures.stream().limit(MAX_ELEMENTS_IN_MESSAGE).map(failure -> failure.element() + " (" + failure.cause() + ")").collect(Collectors.joining(", "));
+    return String.format("%d of %d elements failed to generate in runtime resource pack %s: %s%s", failures.size(), total, packName, elements, failures.size() > MAX_ELEMENTS_IN_MESSAGE ? ", ..." : "");
+  }
+
+  /**
+   * @return The failures of all elements, in the order of the elements.
+   */
+  public List<Failure> getFailures() {
+    return failures;
+  }
+
+  /**
+   * The failure of an element.
+   *
+   * @param element The element that failed to generate.
+   * @param cause   The exception thrown when generating the element.
+   */
+  public record Failure(Object element, Throwable cause) {
+  }
+}
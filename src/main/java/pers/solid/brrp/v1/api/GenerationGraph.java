@@ -0,0 +1,182 @@
+package pers.solid.brrp.v1.api;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * <p>The graph of generation stages of a runtime resource pack, created by {@link RuntimeResourcePack#createGenerationGraph()}. Each stage declares the stages it depends on, and runs on the executor of BRRP after all of them complete, so independent stages run concurrently. As stages can only depend on stages that have been declared, the graph never contains cycles. Here is an example:</p>
+ * <pre>{@code
+ * final GenerationGraph graph = MY_PACK.createGenerationGraph();
+ * final GenerationGraph.Stage<Void> textures = graph.stage("textures", pack -> generateTextures(pack));
+ * graph.stage("recolored_textures", pack -> generateRecoloredTextures(pack), textures);
+ * final GenerationGraph.Stage<List<Block>> blocks = graph.supply("blocks", pack -> collectBlocks());
+ * graph.stage("lang", pack -> generateLang(pack, blocks.get()), blocks);
+ * graph.start().join();
+ * }</pre>
+ * <p>Stages do not start until {@link #start()} is called, and no stages can be added after that. If a stage fails, stages depending on it will not run, and the completion future fails.</p>
+ */
+@ApiStatus.AvailableSince("1.1.0")
+public final class GenerationGraph {
+  private final RuntimeResourcePack pack;
+  private final Executor executor;
+  private final CompletableFuture<Void> trigger = new CompletableFuture<>();
+  private final Map<String, Stage<?>> stages = new LinkedHashMap<>();
+  private @Nullable CompletableFuture<Report> completion;
+  private long startNanos;
+
+  @ApiStatus.Internal
+  public GenerationGraph(RuntimeResourcePack pack, Executor executor) {
+    this.pack = pack;
+    this.executor = executor;
+  }
+
+  /**
+   * Add a stage that generates resources in the pack.
+   *
+   * @param name   The unique name of the stage, used in the report.
+   * @param action The action to generate resources.
+   * @param inputs The stages that should complete before this stage.
+   */
+  public Stage<Void> stage(String name, Consumer<RuntimeResourcePack> action, Stage<?>... inputs) {
+    return supply(name, pack -> {
+      action.accept(pack);
+      return null;
+    }, inputs);
+  }
+
+  /**
+   * Add a stage that produces a value, which can be used by stages depending on it via {@link Stage#get()}.
+   *
+   * @param name   The unique name of the stage, used in the report.
+   * @param action The action to produce the value. It may also generate resources in the pack.
+   * @param inputs The stages that should complete before this stage.
+   */
+  public synchronized <T> Stage<T> supply(String name, Function<RuntimeResourcePack, T> action, Stage<?>... inputs) {
+    if (completion != null) {
+      throw new IllegalStateException("Cannot add stage " + name + " after the generation graph started.");
+    }
+    if (stages.containsKey(name)) {
+      throw new IllegalArgumentException("Duplicate stage name " + name + " in the generation graph.");
+    }
+    final CompletableFuture<?> ready;
+    if (inputs.length == 0) {
+      ready = trigger;
+    } else {
+      final CompletableFuture<?>[] inputFutures = new CompletableFuture<?>[inputs.length];
+      for (int i = 0; i < inputs.length; i++) {
+        if (stages.get(inputs[i].name) != inputs[i]) {
+          throw new IllegalArgumentException("Stage " + inputs[i].name + " does not belong to this generation graph.");
+        }
+        inputFutures[i] = inputs[i].future;
+      }
+      ready = CompletableFuture.allOf(inputFutures);
+    }
+    final Stage<T> stage = new Stage<>(name);
+    stage.future = ready.thenApplyAsync(ignored -> stage.run(action, pack), executor);
+    stages.put(name, stage);
+    return stage;
+  }
+
+  /**
+   * Start running all stages. It can be called only once.
+   *
+   * @return The future that completes when all stages complete, or fails when any stage fails.
+   */
+  public CompletableFuture<Report> start() {
+    final CompletableFuture<Report> completion;
+    synchronized (this) {
+      if (this.completion != null) {
+        throw new IllegalStateException("The generation graph has already started.");
+      }
+      startNanos = System.nanoTime();
+      this.completion = completion = CompletableFuture.allOf(stages.values().stream().map(Stage::future).toArray(CompletableFuture<?>[]::new)).thenApply(ignored -> createReport());
+    }
+    trigger.complete(null);
+    return completion;
+  }
+
+  /**
+   * @return The future returned by {@link #start()}, or {@code null} if it has not started.
+   */
+  public synchronized @Nullable CompletableFuture<Report> completion() {
+    return completion;
+  }
+
+  private synchronized Report createReport() {
+    final Map<String, Duration> stageTimes = new LinkedHashMap<>();
+    stages.forEach((name, stage) -> stageTimes.put(name, stage.elapsed()));
+    return new Report(Collections.unmodifiableMap(stageTimes), Duration.ofNanos(System.nanoTime() - startNanos));
+  }
+
+  /**
+   * A stage in the generation graph.
+   *
+   * @param <T> The type of the value produced by the stage.
+   */
+  public static final class Stage<T> {
+    private final String name;
+    private CompletableFuture<T> future;
+    private volatile long startNanos, endNanos;
+
+    private Stage(String name) {
+      this.name = name;
+    }
+
+    private T run(Function<RuntimeResourcePack, T> action, RuntimeResourcePack pack) {
+      startNanos = System.nanoTime();
+      try {
+        return action.apply(pack);
+      } finally {
+        endNanos = System.nanoTime();
+      }
+    }
+
+    public String name() {
+      return name;
+    }
+
+    /**
+     * @return The future of the value produced by the stage, which can be used to compose with other futures.
+     */
+    public CompletableFuture<T> future() {
+      return future;
+    }
+
+    /**
+     * Get the value produced by the stage. It is intended to be called in stages depending on it, in which case the value is already available. Otherwise, it waits for the stage to complete.
+     */
+    public T get() {
+      return future.join();
+    }
+
+    /**
+     * @return The time the stage took to run, or {@code null} if it has not completed.
+     */
+    public @Nullable Duration elapsed() {
+      final long startNanos = this.startNanos, endNanos = this.endNanos;
+      return startNanos == 0 || endNanos == 0 ? null : Duration.ofNanos(endNanos - startNanos);
+    }
+  }
+
+  /**
+   * The report of a completed generation graph.
+   *
+   * @param stageTimes The time each stage took to run, in the order that stages are added.
+   * @param total      The time from starting the graph until all stages complete.
+   */
+  public record Report(Map<String, Duration> stageTimes, Duration total) {
+    @Override
+    public String toString() {
+      final StringBuilder builder = new StringBuilder(String.format("total %d ms", total.toMillis()));
+      stageTimes.forEach((name, time) -> builder.append(String.format(", %s %d ms", name, time == null ? -1 : time.toMillis())));
+      return builder.toString();
+    }
+  }
+}
@@ -0,0 +1,28 @@
+package pers.solid.brrp.v1.api;
+
+import org.jetbrains.annotations.ApiStatus;
+
+/**
+ * The stats of the cache of lazy resources in a runtime resource pack, returned by {@link RuntimeResourcePack#getLazyCacheStats()}.
+ *
+ * @param hits          The number of times that lazy resources are read from the cache.
+ * @param misses        The number of times that lazy resources are evaluated because they are not cached.
+ * @param evictions     The number of contents removed from the cache because the budget is exceeded or they are collected by the garbage collector.
+ * @param cachedEntries The number of contents currently cached.
+ * @param cachedBytes   The total length of contents currently cached.
+ */
+@ApiStatus.AvailableSince("1.1.0")
+public record LazyCacheStats(long hits, long misses, long evictions, int cachedEntries, long cachedBytes) {
+  /**
+   * @return The number of hits divided by the number of reads. If no lazy resources are read, it is {@code 0}.
+   */
+  public double hitRate() {
+    final long total = hits + misses;
+    return total == 0 ? 0 : (double) hits / total;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%d hits, %d misses (hit rate %.3f), %d evictions, %d entries (%d bytes) cached", hits, misses, hitRate(), evictions, cachedEntries, cachedBytes);
+  }
+}
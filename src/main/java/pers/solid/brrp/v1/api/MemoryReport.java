@@ -0,0 +1,132 @@
+package pers.solid.brrp.v1.api;
+
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.*;
+
+/**
+ * <p>The estimated memory taken by a runtime resource pack, returned by {@link RuntimeResourcePack#getMemoryReport()}. It is intended to find out which resources take most memory, so the numbers are estimated and are not accurate.</p>
+ * <p>Heap bytes of each resource include its identifier and stored content. Immediate resources are counted with a nominal size, as the sizes of their objects are unknown. Resources whose contents are shared because of deduplicating are counted only once.</p>
+ *
+ * @param heapBytes      The estimated total bytes in the heap.
+ * @param offHeapBytes   The bytes of off-heap slabs, see {@link RuntimeResourcePack#setOffHeapPayloadLimit(int)}.
+ * @param spilledBytes   The bytes spilled to the temporary file, see {@link RuntimeResourcePack#setMemoryBudget(long)}.
+ * @param bySide         The heap bytes of {@code "assets"}, {@code "data"} and {@code "root"} resources.
+ * @param byNamespace    The heap bytes of client resources and server data in each namespace.
+ * @param byDirectory    The heap bytes of client resources and server data in each top-level directory, such as {@code "assets/models"} and {@code "data/recipe"}.
+ * @param byKind         The heap bytes of each kind of resources.
+ * @param countsByKind   The number of each kind of resources.
+ */
+@ApiStatus.AvailableSince("1.1.0")
+public record MemoryReport(long heapBytes, long offHeapBytes, long spilledBytes, Map<String, Long> bySide, Map<String, Long> byNamespace, Map<String, Long> byDirectory, Map<Kind, Long> byKind, Map<Kind, Integer> countsByKind) {
+  /**
+   * The number of bytes that an immediate resource is assumed to take.
+   */
+  public static final long NOMINAL_IMMEDIATE_BYTES = 256;
+
+  /**
+   * Format the number of bytes in a readable form, such as {@code "1.5 MiB"}.
+   */
+  public static String formatBytes(long bytes) {
+    if (bytes < 1024) {
+      return bytes + " B";
+    }
+    final int unit = (63 - Long.numberOfLeadingZeros(bytes)) / 10;
+    return String.format(Locale.ROOT, "%.1f %siB", (double) bytes / (1L << (unit * 10)), "KMGTPE".charAt(unit - 1));
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder builder = new StringBuilder();
+    builder.append(String.format("heap %s, off-heap %s, spilled %s", formatBytes(heapBytes), formatBytes(offHeapBytes), formatBytes(spilledBytes)));
+    appendMap(builder, "by side", bySide);
+    appendMap(builder, "by namespace", byNamespace);
+    appendMap(builder, "by directory", byDirectory);
+    builder.append("\n  by kind:");
+    byKind.forEach((kind, bytes) -> builder.append(String.format(" %s=%s (%d)", kind.asString(), formatBytes(bytes), countsByKind.getOrDefault(kind, 0))));
+    return builder.toString();
+  }
+
+  private static void appendMap(StringBuilder builder, String name, Map<String, Long> map) {
+    builder.append("\n  ").append(name).append(':');
+    map.forEach((key, bytes) -> builder.append(' ').append(key).append('=').append(formatBytes(bytes)));
+  }
+
+  /**
+   * The kind of resources, depending on how they are added.
+   */
+  public enum Kind {
+    /**
+     * Binary resources whose contents are provided when added.
+     */
+    EAGER("eager"),
+    /**
+     * Lazy resources that have been evaluated.
+     */
+    LAZY_MATERIALIZED("lazy_materialized"),
+    /**
+     * Lazy resources that have not been evaluated.
+     */
+    LAZY_PENDING("lazy_pending"),
+    /**
+     * Lazy resources whose contents are kept in the cache, see {@link RuntimeResourcePack#setLazyResourceCacheBudget(long)}. Their contents are counted only if currently cached.
+     */
+    LAZY_CACHED("lazy_cached"),
+    /**
+     * Async resources.
+     */
+    ASYNC("async"),
+    /**
+     * Immediate resources.
+     */
+    IMMEDIATE("immediate");
+
+    private final String name;
+
+    Kind(String name) {
+      this.name = name;
+    }
+
+    public String asString() {
+      return name;
+    }
+  }
+
+  /**
+   * The builder to accumulate the memory of resources.
+   */
+  @ApiStatus.Internal
+  public static final class Builder {
+    private long heapBytes;
+    private final Map<String, Long> bySide = new HashMap<>();
+    private final Map<String, Long> byNamespace = new HashMap<>();
+    private final Map<String, Long> byDirectory = new HashMap<>();
+    private final Map<Kind, Long> byKind = new EnumMap<>(Kind.class);
+    private final Map<Kind, Integer> countsByKind = new EnumMap<>(Kind.class);
+
+    /**
+     * @param side      The side, which is {@code "assets"}, {@code "data"} or {@code "root"}.
+     * @param namespace The namespace of the resource, or {@code null} for root resources.
+     * @param directory The top-level directory of the resource, or {@code null} for root resources.
+     */
+    public Builder add(String side, String namespace, String directory, Kind kind, long bytes) {
+      heapBytes += bytes;
+      bySide.merge(side, bytes, Long::sum);
+      if (namespace != null) byNamespace.merge(namespace, bytes, Long::sum);
+      if (directory != null) byDirectory.merge(side + "/" + directory, bytes, Long::sum);
+      byKind.merge(kind, bytes, Long::sum);
+      countsByKind.merge(kind, 1, Integer::sum);
+      return this;
+    }
+
+    public MemoryReport build(long offHeapBytes, long spilledBytes) {
+      return new MemoryReport(heapBytes, offHeapBytes, spilledBytes, sortedByValue(bySide), sortedByValue(byNamespace), sortedByValue(byDirectory), Collections.unmodifiableMap(new EnumMap<>(byKind)), Collections.unmodifiableMap(new EnumMap<>(countsByKind)));
+    }
+
+    private static Map<String, Long> sortedByValue(Map<String, Long> map) {
+      final Map<String, Long> sorted = new LinkedHashMap<>();
+      map.entrySet().stream().sorted(Map.Entry.<String, Long>comparingByValue().reversed()).forEachOrdered(entry -> sorted.put(entry.getKey(), entry.getValue()));
+      return Collections.unmodifiableMap(sorted);
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package pers.solid.brrp.v1.api;
+
+import net.minecraft.resource.ResourceType;
+import net.minecraft.util.Identifier;
+import org.apache.commons.lang3.function.FailableRunnable;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.function.Predicate;
+
+/**
+ * <p>A named part of the client resources and server data in a runtime resource pack, created by {@link RuntimeResourcePack#createPartition(String, Predicate)}. A partition is defined by a selector of resource identifiers, such as a namespace or a path prefix, and has its own regeneration callback, so that when one feature of the mod changes, only the resources of that feature are cleared and regenerated. Here is an example:</p>
+ * <pre>{@code
+ * final ResourcePartition ores = MY_PACK.createPartition("ores", ResourcePartition.prefix("my_mod", "models/block/ore_"));
+ * ores.setRegenerationCallback(() -> generateOreModels(MY_PACK));
+ * ores.regenerate();
+ * }</pre>
+ * <p>Root resources do not belong to any partition. Partitions of a pack should not overlap, as clearing a partition removes all resources matching its selector, including those added by others.</p>
+ */
+@ApiStatus.AvailableSince("1.1.0")
+public interface ResourcePartition {
+  /**
+   * @return The selector of resources in the namespace.
+   */
+  static Predicate<Identifier> namespace(String namespace) {
+    return id -> id.getNamespace().equals(namespace);
+  }
+
+  /**
+   * @param namespace The namespace of resources.
+   * @param prefix    The prefix of paths of resources, such as {@code "models/block/"}.
+   * @return The selector of resources in the namespace whose paths start with the prefix.
+   */
+  static Predicate<Identifier> prefix(String namespace, String prefix) {
+    return id -> id.getNamespace().equals(namespace) && id.getPath().startsWith(prefix);
+  }
+
+  String getName();
+
+  /**
+   * @return Whether the resource belongs to this partition.
+   */
+  boolean contains(Identifier id);
+
+  /**
+   * Set how to regenerate resources of this partition. The callback adds resources to the pack as usual, and the resources should match the selector of this partition. It does not need to clear resources, as {@link #regenerate()} clears them before running the callback.
+   */
+  void setRegenerationCallback(@Nullable FailableRunnable<InterruptedException> regenerationCallback);
+
+  boolean hasRegenerationCallback();
+
+  /**
+   * Remove client resources and server data of this partition.
+   */
+  void clearResources();
+
+  /**
+   * Remove resources of this partition of the specific resource type.
+   */
+  void clearResources(ResourceType side);
+
+  /**
+   * Clear resources of this partition, and run the regeneration callback. Resources of other partitions are not affected. If no callback is set, it does nothing.
+   *
+   * @throws InterruptedException If the regeneration is interrupted.
+   * @see RuntimeResourcePack#regeneratePartitions
+   */
+  void regenerate() throws InterruptedException;
+
+  /**
+   * @return The current stats of this partition.
+   */
+  Stats getStats();
+
+  /**
+   * The stats of a partition.
+   *
+   * @param clientResources      The number of client resources in the partition.
+   * @param serverData           The number of server data in the partition.
+   * @param regenerations        The number of times the partition has been regenerated.
+   * @param lastRegenerationTime The time the last regeneration took, or {@code null} if it has never been regenerated.
+   */
+  record Stats(int clientResources, int serverData, long regenerations, @Nullable Duration lastRegenerationTime) {
+    @Override
+    public String toString() {
+      return String.format("%d client resources, %d server data, %d regenerations (last %s ms)", clientResources, serverData, regenerations, lastRegenerationTime == null ? "-" : lastRegenerationTime.toMillis());
+    }
+  }
+}
@@ -47,7 +47,9 @@ import pers.solid.brrp.v1.gui.DumpScreen;
 import pers.solid.brrp.v1.gui.RRPConfigScreen;
 import pers.solid.brrp.v1.gui.RegenerateScreen;
 import pers.solid.brrp.v1.impl.BRRPBlockLootTableGenerator;
+import pers.solid.brrp.v1.impl.ReloadBarrier;
 import pers.solid.brrp.v1.impl.RuntimeResourcePackImpl;
+import pers.solid.brrp.v1.impl.SupplierWatchdog;
 import pers.solid.brrp.v1.model.ModelJsonBuilder;
 import pers.solid.brrp.v1.tag.IdentifiedTagBuilder;
 import pers.solid.brrp.v1.tag.ObjectTagBuilder;
@@ -59,10 +61,16 @@ import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.IntUnaryOperator;
+import java.util.function.Predicate;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
@@ -188,6 +196,58 @@ public interface RuntimeResourcePack extends ResourcePack {
    */
   void setAllowsDuplicateResource(boolean b);
 
+  /**
+   * Set the minimum length of binary resources to be stored in compressed form in the memory. Generated JSON files usually compress very well, so it may save much memory for large packs, at the cost of decompressing when resources are read. It only affects resources added after calling this method, such as via {@link #addAsset(Identifier, byte[])}, {@link #addData(Identifier, byte[])} and {@link #addResource(ResourceType, Identifier, byte[])}. Lazy resources are compressed after they are evaluated. Async and immediate resources are not compressed.
+   *
+   * @param threshold The minimum length in bytes. A negative value, which is the default value, means never compressing.
+   * @see #getCompressionStats()
+   */
+  @ApiStatus.AvailableSince("1.1.0")
+  void setCompressionThreshold(int threshold);
+
+  /**
+   * Set the maximum number of bytes that binary resources of this pack may take in the heap. When it is exceeded, resources that are not recently read will be written into a temporary file, and will be read from the memory-mapped file when required. It is useful when there are many large packs, such as in dedicated servers. Lazy resources are counted after they are evaluated. Async and immediate resources are not counted.
+   *
+   * @param budget The maximum number of bytes. A negative value, which is the default value, means no limit.
+   */
+  @ApiStatus.AvailableSince("1.1.0")
+  void setMemoryBudget(long budget);
+
+  /**
+   * Set whether binary resources with identical content should share the same stored content. Generated packs often contain many identical files, such as loot tables that drop the block itself, or identical item models and textures. When enabled, the content of each binary resource added, as well as lazy resources after evaluated, is hashed, and the stored content will be shared if an identical one exists.
+   *
+   * @param b Whether to deduplicate resources. It is {@code false} by default.
+   * @see #getDeduplicatedBytes()
+   */
+  @ApiStatus.AvailableSince("1.1.0")
+  void setDeduplicatesResources(boolean b);
+
+  /**
+   * Set the maximum length of binary resources to be stored in off-heap memory. Small resources, such as most JSON files, are packed into large off-heap slabs instead of separate byte arrays, which reduces the work of garbage collection when there are a great many of them. The slabs are released when the resources are cleared. It only affects resources added after calling this method. Lazy resources are stored after they are evaluated. Async and immediate resources are not affected.
+   *
+   * @param maxLength The maximum length in bytes of the stored content, which is the compressed length if compressed. A negative value, which is the default value, means not using off-heap memory.
+   */
+  @ApiStatus.AvailableSince("1.1.0")
+  void setOffHeapPayloadLimit(int maxLength);
+
+  /**
+   * Set the budget of the cache of lazy resources. By default, the content of a lazy resource is kept for the whole life of the pack after it is evaluated, which wastes memory if it is read only once in each reload. When the budget is set, the evaluated contents of lazy resources are kept in a cache instead, which evicts least recently used contents when the total length exceeds the budget. The cached contents are softly referenced, so they may also be collected when the memory is low. Evicted resources are evaluated again when read next time, so the functions of lazy resources should return the same content each time. It only affects lazy resources added after calling this method.
+   *
+   * @param budget The maximum total length in bytes of cached contents. A negative value, which is the default value, means not using the cache.
+   * @see #getLazyCacheStats()
+   */
+  @ApiStatus.AvailableSince("1.1.0")
+  void setLazyResourceCacheBudget(long budget);
+
+  /**
+   * Set whether immediate client resources should be released after a resource reload completes. After atlases are stitched and models are baked, the immediate resources, such as {@code NativeImage}s and {@code JsonElement}s, are not read again until the next reload, but they are still kept in the pack. When enabled, immediate client resources are removed from the pack after each client resource reload completes, and the client resource regeneration callback set by {@link #setSidedRegenerationCallback(ResourceType, FailableRunnable)} is run on demand when the pack is loaded in the next reload, or when resources of the side are looked up before that, so that the pack never misses resources outside reloads. Therefore, the regeneration callback should clear client resources before regenerating them.
+   * <p>It has no effect if no client resource regeneration callback is set.</p>
+   *
+   * @param b Whether to release immediate client resources. It is {@code false} by default.
+   */
+  @ApiStatus.AvailableSince("1.1.0")
+  void setReleasesImmediateResourcesAfterReload(boolean b);
+
 
   /**
    * The method is used in {@link RRPConfigScreen} and {@link RegenerateScreen}. If it has the regeneration callback, no matter it is client-only, server-only, or both-side, the "Regenerate" button will be enabled.
@@ -289,6 +349,22 @@ public interface RuntimeResourcePack extends ResourcePack {
    */
   void setSidedRegenerationCallback(@NotNull ResourceType resourceType, FailableRunnable<InterruptedException> regenerationCallback);
 
+  /**
+   * <p>Set whether resources are regenerated with double buffering. When enabled, {@link #regenerate()} and {@link #regenerateSided(ResourceType)} run the regeneration callback on a copy of the resources, and replace the resources with the copy only after the callback completes. During the regeneration, resources read from the pack, such as in resource reloads and dumps, are the ones before it, instead of an empty or partially regenerated pack, so the regeneration can run in parallel with the game.</p>
+   * <p>The regeneration callback does not need to be changed. Clearing and adding resources in the callback affects the copy. If the callback fails, the copy is discarded and the resources are unchanged. It takes more memory during the regeneration, as both the resources and the copy are kept.</p>
+   *
+   * @see #setRegenerationCallback(FailableRunnable)
+   */
+  @ApiStatus.AvailableSince("1.1.0")
+  void setDoubleBufferedRegeneration(boolean b);
+
+  /**
+   * @return Whether resources are regenerated with double buffering.
+   * @see #setDoubleBufferedRegeneration(boolean)
+   */
+  @ApiStatus.AvailableSince("1.1.0")
+  boolean isDoubleBufferedRegeneration();
+
   /**
    * @return The display name of the pack, which may be shown in the {@link RRPConfigScreen}.
    */
@@ -408,6 +484,20 @@ public interface RuntimeResourcePack extends ResourcePack {
    */
   void clearRootResources();
 
+  /**
+   * <p>Seal the client resources, server data and root resources of this pack when you have finished generating them. Sealed resources are compacted into immutable sorted arrays or maps, which takes much less memory than concurrent maps, and makes looking up and iterating resources faster.</p>
+   * <p>Adding resources to a sealed pack is still allowed, but the pack will be unsealed first, which takes some time. Therefore, you should seal the pack only after all resources are added, and do not add resources in other threads at the same time. If you regenerate resources, you may seal it again after regenerating.</p>
+   */
+  @ApiStatus.AvailableSince("1.1.0")
+  void seal();
+
+  /**
+   * @return Whether the pack is {@linkplain #seal() sealed}.
+   */
+  @ApiStatus.AvailableSince("1.1.0")
+  @Contract(pure = true)
+  boolean isSealed();
+
   // endregion
 
   // region Client part
@@ -846,6 +936,59 @@ public interface RuntimeResourcePack extends ResourcePack {
    */
   void regenerateSided(@NotNull ResourceType resourceType) throws InterruptedException;
 
+  /**
+   * Regenerate all resources like {@link #regenerate()}, and return the resources that are added, removed or modified. Resources whose contents are not changed keep their previous storage. The changes can be used to do work only for changed resources.
+   *
+   * @return The resources changed by the regeneration.
+   * @throws InterruptedException If the regeneration is interrupted.
+   */
+  @ApiStatus.AvailableSince("1.1.0")
+  ChangeSet regenerateWithChanges() throws InterruptedException;
+
+  /**
+   * Regenerate resources for one resource type like {@link #regenerateSided(ResourceType)}, and return the resources that are added, removed or modified. The changes of the other resource type and root resources are empty.
+   *
+   * @param resourceType The type of resources to be regenerated.
+   * @return The resources changed by the regeneration.
+   * @throws InterruptedException If the regeneration is interrupted.
+   */
+  @ApiStatus.AvailableSince("1.1.0")
+  ChangeSet regenerateSidedWithChanges(@NotNull ResourceType resourceType) throws InterruptedException;
+
+  /**
+   * Create a named partition of client resources and server data in this pack, which can be cleared and regenerated without affecting other resources. See {@link ResourcePartition} for details.
+   *
+   * @param name     The unique name of the partition, such as the name of a feature.
+   * @param selector The selector of resources in the partition, such as {@link ResourcePartition#namespace(String)} or {@link ResourcePartition#prefix(String, String)}.
+   * @return The new partition.
+   * @throws IllegalArgumentException If a partition with the name already exists.
+   */
+  @ApiStatus.AvailableSince("1.1.0")
+  ResourcePartition createPartition(String name, Predicate<Identifier> selector);
+
+  /**
+   * @return The partition with the name, or {@code null} if it does not exist.
+   */
+  @ApiStatus.AvailableSince("1.1.0")
+  @Nullable ResourcePartition getPartition(String name);
+
+  /**
+   * @return All partitions of this pack.
+   */
+  @ApiStatus.AvailableSince("1.1.0")
+  Collection<ResourcePartition> getPartitions();
+
+  /**
+   * Regenerate the partitions in parallel on the executor of BRRP, and return after all of them complete. The failure of a partition does not stop regenerating other partitions, and failures are thrown together as a {@link GenerationException}, whose elements are the names of failed partitions.
+   *
+   * @param names The names of partitions to regenerate.
+   * @throws IllegalArgumentException If any of the partitions does not exist.
+   * @throws GenerationException      If any of the partitions fails to regenerate.
+   * @throws InterruptedException     If the current thread is interrupted when waiting, in which case the regenerations are cancelled.
+   */
+  @ApiStatus.AvailableSince("1.1.0")
+  void regeneratePartitions(Collection<String> names) throws InterruptedException;
+
   // endregion
 
   /**
@@ -856,6 +999,94 @@ public interface RuntimeResourcePack extends ResourcePack {
    */
   Future<?> async(Consumer<RuntimeResourcePack> action);
 
+  /**
+   * <p>Configure the executor that runs async resources, {@link #async(Consumer)} and {@link GenerationGraph}s of all runtime resource packs. By default, it is a fixed thread pool owned by BRRP, whose size depends on the number of processors.</p>
+   * <p>The number of pending tasks is limited. When the limit is reached, new tasks run directly in the thread that submits them, so that producing too many tasks is slowed down.</p>
+   * <p>The initial settings can also be specified with the system properties {@code brrp.executor.mode}, {@code brrp.executor.parallelism} and {@code brrp.executor.maxPendingTasks}.</p>
+   *
+   * @param mode            The kind of the executor.
+   * @param parallelism     The number of threads, used by {@link ExecutorMode#FIXED_POOL} and {@link ExecutorMode#FORK_JOIN}.
+   * @param maxPendingTasks The maximum number of tasks that are queued or running.
+   */
+  @ApiStatus.AvailableSince("1.1.0")
+  static void configureExecutor(ExecutorMode mode, int parallelism, int maxPendingTasks) {
+    RuntimeResourcePackImpl.EXECUTOR_SERVICE.configure(mode, parallelism, maxPendingTasks);
+  }
+
+  /**
+   * @return The current state of the executor, such as the number of queued and running tasks.
+   * @see #configureExecutor(ExecutorMode, int, int)
+   */
+  @ApiStatus.AvailableSince("1.1.0")
+  static ExecutorStats getExecutorStats() {
+    return RuntimeResourcePackImpl.EXECUTOR_SERVICE.getStats();
+  }
+
+  /**
+   * Set the maximum time to wait for async resources when resources are reloaded. Before reloaders prepare resources, the reload waits for async resources added since the last reload in the prepare executor, and logs the resources that are slow, fail or time out, instead of blocking the first thread that reads them. The default timeout is 60 seconds, which can be also specified with the system property {@code brrp.reloadBarrier.timeoutSeconds}.
+   *
+   * @param timeout The maximum time to wait in each reload. Zero disables waiting, in which case async resources are waited for only when read.
+   */
+  @ApiStatus.AvailableSince("1.1.0")
+  static void setReloadBarrierTimeout(Duration timeout) {
+    ReloadBarrier.setTimeout(timeout);
+  }
+
+  /**
+   * Enable or disable the watchdog that times the evaluation of lazy resources and the waiting for async resources. When they take longer than the threshold on the render thread or the server thread, which makes the game freeze, the resource and the stack trace of the thread are logged. It is disabled by default, and can also be enabled with the system property {@code brrp.watchdog.thresholdMillis}.
+   *
+   * @param threshold The threshold above which blocking is logged, or {@code null} to disable the watchdog.
+   * @see #getWatchdogStats()
+   */
+  @ApiStatus.AvailableSince("1.1.0")
+  static void setWatchdogThreshold(@Nullable Duration threshold) {
+    SupplierWatchdog.setThreshold(threshold);
+  }
+
+  /**
+   * @return The stats of resources timed by the watchdog since the game started. If the watchdog is never enabled, nothing is counted.
+   * @see #setWatchdogThreshold(Duration)
+   */
+  @ApiStatus.AvailableSince("1.1.0")
+  static WatchdogStats getWatchdogStats() {
+    return SupplierWatchdog.getStats();
+  }
+
+  /**
+   * <p>Generate resources for each element in parallel, which is useful when there are a great many elements, such as thousands of blocks. The elements are split across a fork/join pool, and this method returns only after all elements are generated, so all resources are already in the pack when it returns.</p>
+   * <p>If duplicate resources are not allowed, adding resources in this pack is atomic, so resources generated in parallel never silently overwrite each other, and duplicate resources cause failures as usual.</p>
+   * <p>The failure of an element does not stop generating other elements. After all elements are handled, failures are thrown together as a {@link GenerationException}.</p>
+   *
+   * @param elements  The elements to generate, such as blocks.
+   * @param generator The function to generate resources of an element in the pack. It is called in different threads.
+   * @throws GenerationException If any elements fail to generate.
+   */
+  @ApiStatus.AvailableSince("1.1.0")
+  <T> void parallelGenerate(Collection<T> elements, BiConsumer<RuntimeResourcePack, T> generator);
+
+  /**
+   * Create a graph of generation stages for this pack, in which stages with dependencies are run in order, and independent stages are run concurrently on the executor of BRRP. See {@link GenerationGraph} for details.
+   *
+   * @return A new generation graph, whose stages are not started until {@link GenerationGraph#start()} is called.
+   */
+  @ApiStatus.AvailableSince("1.1.0")
+  @Contract("-> new")
+  GenerationGraph createGenerationGraph();
+
+  /**
+   * <p>Generate resources of this pack in the background, and return immediately. While the generation is running, resources that are already generated can be read as usual, and reading a resource that is not generated yet, or finding resources, waits until the generation completes, only if the resource is in one of the declared namespaces. Therefore, the pack can be used in a resource reload before the generation completes, which overlaps the generation with the loading of other resource packs.</p>
+   * <p>If another background generation is running, the new generation starts after it completes.</p>
+   * <p>As resource managers get the namespaces of packs when they are created, resources in namespaces that are not declared may be ignored if they are generated after that. Besides, root resources such as {@code pack.mcmeta} and {@code pack.png} should be added before the generation starts, as they are not waited for.</p>
+   *
+   * @param executor   The executor to run the generation, such as {@link net.minecraft.util.Util#getMainWorkerExecutor()}, which is the executor that prepares resource reloads.
+   * @param namespaces The namespaces of resources that will be generated.
+   * @param generator  The function to generate resources in the pack.
+   * @return The future that completes when the generation completes.
+   * @see pers.solid.brrp.v1.RRPEventHelper#registerBackgroundPack
+   */
+  @ApiStatus.AvailableSince("1.1.0")
+  CompletableFuture<Void> generateInBackground(Executor executor, Collection<String> namespaces, Consumer<RuntimeResourcePack> generator);
+
   @Contract(pure = true)
   int numberOfClientResources();
 
@@ -865,6 +1096,39 @@ public interface RuntimeResourcePack extends ResourcePack {
   @Contract(pure = true)
   int numberOfRootResources();
 
+  /**
+   * @return The stats of resources that are stored in compressed form.
+   * @see #setCompressionThreshold(int)
+   */
+  @ApiStatus.AvailableSince("1.1.0")
+  @Contract(pure = true)
+  CompressionStats getCompressionStats();
+
+  /**
+   * @return The total length of resource contents that are not stored because identical contents have been stored.
+   * @see #setDeduplicatesResources(boolean)
+   */
+  @ApiStatus.AvailableSince("1.1.0")
+  @Contract(pure = true)
+  long getDeduplicatedBytes();
+
+  /**
+   * @return The stats of the cache of lazy resources.
+   * @see #setLazyResourceCacheBudget(long)
+   */
+  @ApiStatus.AvailableSince("1.1.0")
+  @Contract(pure = true)
+  LazyCacheStats getLazyCacheStats();
+
+  /**
+   * Estimate the memory taken by resources in this pack, grouped by sides, namespaces, directories and kinds of resources. It iterates over all resources, so it should not be called frequently. The estimated memory of the pack is also logged in debug level when the pack is closed.
+   *
+   * @return The estimated memory of resources in this pack.
+   */
+  @ApiStatus.AvailableSince("1.1.0")
+  @Contract(pure = true)
+  MemoryReport getMemoryReport();
+
   @Deprecated(since = "1.1.0", forRemoval = true)
   @Contract(pure = true)
   RegistryWrapper.WrapperLookup getRegistryLookup();
@@ -0,0 +1,23 @@
+package pers.solid.brrp.v1.api;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+
+/**
+ * The stats of the watchdog that times the evaluation of lazy and async resources, returned by {@link RuntimeResourcePack#getWatchdogStats()}. Resources are timed only when the watchdog is enabled by {@link RuntimeResourcePack#setWatchdogThreshold(Duration)}.
+ *
+ * @param materializations The number of times that lazy resources are evaluated or async resources are waited for.
+ * @param totalTime        The total time of these evaluations and waits.
+ * @param blockingEvents   The number of evaluations and waits that exceed the threshold on the render thread or the server thread.
+ * @param slowestResource  The name of the resource that took the longest time, or {@code null} if no resources are timed.
+ * @param slowestTime      The time of the slowest resource.
+ */
+@ApiStatus.AvailableSince("1.1.0")
+public record WatchdogStats(long materializations, Duration totalTime, long blockingEvents, @Nullable String slowestResource, Duration slowestTime) {
+  @Override
+  public String toString() {
+    return String.format("%d materializations in %d ms, %d blocking events, slowest %s (%d ms)", materializations, totalTime.toMillis(), blockingEvents, slowestResource, slowestTime.toMillis());
+  }
+}
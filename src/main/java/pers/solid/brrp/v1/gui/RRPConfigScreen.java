@@ -31,6 +31,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.lwjgl.glfw.GLFW;
 import pers.solid.brrp.v1.PlatformBridge;
+import pers.solid.brrp.v1.api.MemoryReport;
 import pers.solid.brrp.v1.api.RuntimeResourcePack;
 
 import java.util.ArrayList;
@@ -248,6 +249,8 @@ public class RRPConfigScreen extends Screen {
               singleOrPlural("brrp.configScreen.summary.rootResources.", runtimeResourcePack.numberOfRootResources()),
               singleOrPlural("brrp.configScreen.summary.clientResources.", runtimeResourcePack.numberOfClientResources()),
               singleOrPlural("brrp.configScreen.summary.serverData.", runtimeResourcePack.numberOfServerData())));
+          final MemoryReport memoryReport = runtimeResourcePack.getMemoryReport();
+          descriptionList.add(Text.translatable("brrp.configScreen.memory", MemoryReport.formatBytes(memoryReport.heapBytes()), MemoryReport.formatBytes(memoryReport.offHeapBytes()), MemoryReport.formatBytes(memoryReport.spilledBytes())).styled(style -> style.withColor(0x909090)));
         } else {
           titleText = resourcePack.getInfo().title();
         }
@@ -83,7 +83,8 @@ public class RegenerateScreen extends Screen {
     onlyRegenClientButton.active = isIdle && pack.hasSidedRegenerationCallback(ResourceType.CLIENT_RESOURCES);
     onlyRegenServerButton.active = isIdle && pack.hasSidedRegenerationCallback(ResourceType.SERVER_DATA);
     regenButton.active = isIdle && pack.hasRegenerationCallback();
-    backButton.active = isIdle;
+    // with double buffering, the pack stays usable during the regeneration, so the screen can be left
+    backButton.active = isIdle || pack.isDoubleBufferedRegeneration();
     interruptButton.active = !isIdle;
     if (isIdle) {
       stateText.setMessage(STATE_IDLE);
@@ -137,7 +138,7 @@ public class RegenerateScreen extends Screen {
 
   @Override
   public void close() {
-    if (currentThread != null && currentThread.isAlive()) return;
+    if (currentThread != null && currentThread.isAlive() && !pack.isDoubleBufferedRegeneration()) return;
     if (client != null) {
       client.setScreen(parent);
     }
@@ -0,0 +1,78 @@
+package pers.solid.brrp.v1.impl;
+
+import net.minecraft.resource.InputSupplier;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * The supplier of an async resource, which waits for the future to complete when getting the content. It records when the content is submitted and evaluated, so that slow resources can be reported by {@link ReloadBarrier}.
+ */
+@ApiStatus.Internal
+public final class AsyncResourceSupplier implements OpenableResourceSupplier {
+  private final String name;
+  private final long submitNanos = System.nanoTime();
+  private volatile long endNanos;
+  private Future<byte[]> future;
+  private final InputSupplier<InputStream> inputSupplier = () -> new ByteArrayInputStream(get());
+
+  private AsyncResourceSupplier(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Submit the evaluation of the content to the executor.
+   *
+   * @param name The name of the resource used in logs, such as {@code "assets/minecraft/models/block/stone.json"}.
+   */
+  public static AsyncResourceSupplier submit(ExecutorService executor, String name, Callable<byte[]> callable) {
+    final AsyncResourceSupplier supplier = new AsyncResourceSupplier(name);
+    supplier.future = executor.submit(() -> {
+      try {
+        return callable.call();
+      } finally {
+        supplier.endNanos = System.nanoTime();
+      }
+    });
+    return supplier;
+  }
+
+  public String name() {
+    return name;
+  }
+
+  public Future<byte[]> future() {
+    return future;
+  }
+
+  /**
+   * @return The nanoseconds from submitting until the content is evaluated, or until now if it is not evaluated yet.
+   */
+  public long elapsedNanos() {
+    final long endNanos = this.endNanos;
+    return (endNanos == 0 ? System.nanoTime() : endNanos) - submitNanos;
+  }
+
+  @Override
+  public byte[] get() {
+    return future.isDone() ? await() : SupplierWatchdog.time(this::name, this::await);
+  }
+
+  private byte[] await() {
+    try {
+      return future.get();
+    } catch (InterruptedException | ExecutionException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  public InputSupplier<InputStream> inputSupplier() {
+    return inputSupplier;
+  }
+}
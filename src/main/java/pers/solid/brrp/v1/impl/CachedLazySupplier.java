@@ -0,0 +1,75 @@
+package pers.solid.brrp.v1.impl;
+
+import net.minecraft.resource.InputSupplier;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.lang.ref.SoftReference;
+import java.util.function.Supplier;
+
+/**
+ * The supplier of a lazy resource whose evaluated content is kept in a {@link LazyResourceCache} instead of being kept for the whole life of the pack. If the content has been evicted or collected, it is evaluated again.
+ */
+@ApiStatus.Internal
+public final class CachedLazySupplier implements OpenableResourceSupplier {
+  private final Supplier<byte[]> delegate;
+  private final LazyResourceCache cache;
+  private final InputSupplier<InputStream> inputSupplier = () -> new ByteArrayInputStream(get());
+  private volatile @Nullable SoftReference<byte[]> cached;
+
+  /**
+   * @param delegate The function to evaluate the content, which may be called more than once.
+   * @param cache    The cache of the pack.
+   */
+  public CachedLazySupplier(Supplier<byte[]> delegate, LazyResourceCache cache) {
+    this.delegate = delegate;
+    this.cache = cache;
+  }
+
+  /**
+   * @return The cached content, or {@code null} if it is not cached. It does not affect the cache.
+   */
+  public byte @Nullable [] getCached() {
+    final SoftReference<byte[]> cached = this.cached;
+    return cached == null ? null : cached.get();
+  }
+
+  @Override
+  public byte[] get() {
+    byte[] bytes = getCached();
+    if (bytes != null) {
+      cache.recordHit(this);
+      return bytes;
+    }
+    synchronized (this) {
+      final SoftReference<byte[]> cached = this.cached;
+      if (cached != null) {
+        bytes = cached.get();
+        if (bytes != null) {
+          cache.recordHit(this);
+          return bytes;
+        }
+        cache.onCollected(this);
+      }
+      cache.recordMiss();
+      bytes = delegate.get();
+      this.cached = new SoftReference<>(bytes);
+      cache.put(this, bytes.length);
+      return bytes;
+    }
+  }
+
+  @Override
+  public InputSupplier<InputStream> inputSupplier() {
+    return inputSupplier;
+  }
+
+  /**
+   * Drop the cached content, called by the cache.
+   */
+  void evict() {
+    cached = null;
+  }
+}
@@ -0,0 +1,89 @@
+package pers.solid.brrp.v1.impl;
+
+import net.minecraft.registry.RegistryWrapper;
+import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+import pers.solid.brrp.v1.api.RegistryResourceFunction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+
+import static pers.solid.brrp.v1.api.RuntimeResourcePack.LOGGER;
+
+/**
+ * Evaluates {@link RegistryResourceFunction}s of immediate resources in parallel, so that generating thousands of immediate resources, such as block loot tables, does not occupy a single reload thread. The results are sorted by identifiers, so that they can be added to registries in a stable order.
+ */
+@ApiStatus.Internal
+public final class ImmediateResourceEvaluator {
+  /**
+   * The number of functions evaluated in one task, so that cheap functions do not produce too many tasks.
+   */
+  private static final int BATCH_SIZE = 64;
+
+  private ImmediateResourceEvaluator() {
+  }
+
+  /**
+   * @param resources     The immediate resources, which may be {@link RegistryResourceFunction}s or the resources themselves.
+   * @param executor      The executor to evaluate functions on, which is usually the prepare executor of the reload.
+   * @param skipsFailures If {@code true}, resources whose functions throw exceptions are logged and skipped, like how vanilla skips resources that cannot be parsed. Otherwise, the future completes exceptionally.
+   * @return The future of the evaluated resources sorted by identifiers.
+   */
+  public static CompletableFuture<List<Map.Entry<Identifier, Object>>> evaluate(Map<Identifier, Object> resources, RegistryWrapper.WrapperLookup wrapperLookup, Executor executor, boolean skipsFailures) {
+    return evaluate(resources, wrapperLookup, executor, skipsFailures, null);
+  }
+
+  /**
+   * @param validator The validator called with each evaluated resource in the same task, which may throw exceptions for invalid resources.
+   * @see #evaluate(Map, RegistryWrapper.WrapperLookup, Executor, boolean)
+   */
+  public static CompletableFuture<List<Map.Entry<Identifier, Object>>> evaluate(Map<Identifier, Object> resources, RegistryWrapper.WrapperLookup wrapperLookup, Executor executor, boolean skipsFailures, @Nullable BiConsumer<Identifier, Object> validator) {
+    final Identifier[] ids = resources.keySet().toArray(Identifier[]::new);
+    Arrays.sort(ids);
+    final Object[] results = new Object[ids.length];
+    final List<CompletableFuture<Void>> batches = new ArrayList<>();
+    for (int from = 0; from < ids.length; from += BATCH_SIZE) {
+      final int start = from, end = Math.min(from + BATCH_SIZE, ids.length);
+      boolean needsEvaluation = validator != null;
+      for (int i = start; i < end; i++) {
+        results[i] = resources.get(ids[i]);
+        needsEvaluation |= results[i] instanceof RegistryResourceFunction<?>;
+      }
+      if (needsEvaluation) {
+        batches.add(CompletableFuture.runAsync(() -> {
+          for (int i = start; i < end; i++) {
+            try {
+              if (results[i] instanceof RegistryResourceFunction<?> rf) {
+                results[i] = rf.apply(wrapperLookup);
+              }
+              if (validator != null) {
+                validator.accept(ids[i], results[i]);
+              }
+            } catch (RuntimeException e) {
+              if (!skipsFailures) {
+                throw e;
+              }
+              LOGGER.error("BRRP: Failed to load immediate resource {}, skipped", ids[i], e);
+              results[i] = null;
+            }
+          }
+        }, executor));
+      }
+    }
+    return CompletableFuture.allOf(batches.toArray(CompletableFuture[]::new)).thenApply(unused -> {
+      final List<Map.Entry<Identifier, Object>> list = new ArrayList<>(ids.length);
+      for (int i = 0; i < ids.length; i++) {
+        if (results[i] != null) {
+          list.add(Map.entry(ids[i], results[i]));
+        }
+      }
+      return list;
+    });
+  }
+}
@@ -0,0 +1,125 @@
+package pers.solid.brrp.v1.impl;
+
+import net.minecraft.resource.*;
+import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+import pers.solid.brrp.v1.api.ImmediateInputSupplier;
+import pers.solid.brrp.v1.api.ImmediateResourceSupplier;
+import pers.solid.brrp.v1.mixin.ResourceAccessor;
+
+import java.util.*;
+import java.util.function.Function;
+
+import static pers.solid.brrp.v1.api.RuntimeResourcePack.LOGGER;
+
+/**
+ * <p>The index of immediate resources in the runtime resource packs of a resource manager, grouped by directories, such as {@code "recipe"} or {@code "worldgen/biome"}. Immediate resources of a directory, including its subdirectories, can be found without enumerating all resources of all packs with {@link ResourceFinder}.</p>
+ * <p>The index respects the order of packs: if multiple runtime resource packs provide the same resource, the one with the highest priority is used; if a runtime resource pack with higher priority provides a resource of the same identifier that is not immediate, or a normal pack with higher priority provides or filters it, the resource is not considered immediate.</p>
+ */
+@ApiStatus.Internal
+public final class ImmediateResourceIndex {
+  private final Map<String, Map<Identifier, Object>> resourcesByDirectory;
+
+  private ImmediateResourceIndex(Map<String, Map<Identifier, Object>> resourcesByDirectory) {
+    this.resourcesByDirectory = resourcesByDirectory;
+  }
+
+  /**
+   * Build the index of the resource manager.
+   *
+   * @param manager The resource manager, which is used to check whether an immediate resource is overridden by normal packs.
+   * @param packs   The packs of the resource manager, from the lowest priority to the highest.
+   */
+  public static ImmediateResourceIndex build(ResourceManager manager, ResourceType type, List<ResourcePack> packs) {
+    final long startNanos = System.nanoTime();
+    final List<@Nullable ResourceStorage> storages = new ArrayList<>(packs.size());
+    for (ResourcePack pack : packs) {
+      storages.add(pack instanceof RuntimeResourcePackImpl runtimeResourcePack ? runtimeResourcePack.getStorageForIndex(type) : null);
+    }
+    final Map<Identifier, Object> resources = resolve(storages, id -> manager.getResource(id).map(resource -> ((ResourceAccessor) resource).getInputSupplier() instanceof ImmediateInputSupplier<?> im ? im.resource() : null));
+
+    final Map<String, Map<Identifier, Object>> resourcesByDirectory = new HashMap<>();
+    resources.forEach((id, resource) -> {
+      final String path = id.getPath();
+      for (int slash = path.indexOf('/'); slash >= 0; slash = path.indexOf('/', slash + 1)) {
+        resourcesByDirectory.computeIfAbsent(path.substring(0, slash), directory -> new HashMap<>()).put(id, resource);
+      }
+    });
+
+    LOGGER.debug("Indexed {} immediate resources of {} in {} ms.", resources.size(), type, (System.nanoTime() - startNanos) / 1_000_000);
+    return new ImmediateResourceIndex(resourcesByDirectory);
+  }
+
+  /**
+   * Resolve the immediate resources that are not overridden by packs with higher priority. Packs are visited from the highest priority, and each identifier is resolved by the first runtime resource pack that provides an immediate resource of it. The resource is overridden if a runtime resource pack with higher priority provides a resource of the identifier that is not immediate. If there is a normal pack with higher priority, which may provide or filter the resource, it is looked up in the resource manager instead.
+   *
+   * @param storages      The storages of the packs of a resource type, from the lowest priority to the highest, where {@code null} stands for a normal pack.
+   * @param managerLookup The function to look up the resource in the resource manager, which returns the immediate resource with the highest priority, or an empty optional if that resource is not immediate.
+   * @return The map from identifiers to immediate resources that are not overridden.
+   */
+  static Map<Identifier, Object> resolve(List<@Nullable ResourceStorage> storages, Function<Identifier, Optional<Object>> managerLookup) {
+    final Map<Identifier, Object> resources = new HashMap<>();
+    final Set<Identifier> visited = new HashSet<>();
+    boolean belowNormalPack = false;
+    for (int i = storages.size() - 1; i >= 0; i--) {
+      final ResourceStorage storage = storages.get(i);
+      if (storage == null) {
+        belowNormalPack = true;
+        continue;
+      }
+      final List<ResourceStorage> higherStorages = storages.subList(i + 1, storages.size());
+      final boolean looksUpManager = belowNormalPack;
+      storage.forEachImmediateResource((id, supplier) -> {
+        if (!visited.add(id)) {
+          // resolved by the immediate resource of a pack with higher priority
+          return;
+        }
+        if (looksUpManager) {
+          managerLookup.apply(id).ifPresent(resource -> resources.put(id, resource));
+        } else if (!isProvidedByAny(higherStorages, id)) {
+          resources.put(id, supplier.resource());
+        }
+      });
+    }
+    return resources;
+  }
+
+  private static boolean isProvidedByAny(List<@Nullable ResourceStorage> storages, Identifier id) {
+    for (ResourceStorage storage : storages) {
+      if (storage != null && storage.get(id) != null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Find immediate JSON resources in the directory of the resource manager, like {@link ResourceFinder#json(String)}. If the resource manager is not indexed, resources are found with {@link ResourceFinder}.
+   *
+   * @param directory The directory, such as {@code "recipe"}.
+   * @return The map from resource identifiers (without the directory and the extension) to the immediate resources.
+   */
+  public static Map<Identifier, Object> find(ResourceManager manager, String directory) {
+    final ResourceFinder resourceFinder = ResourceFinder.json(directory);
+    final Map<Identifier, Object> map = new HashMap<>();
+    if (manager instanceof LifecycledResourceManagerExtension extension) {
+      final Map<Identifier, Object> resources = extension.getImmediateResourceIndex$brrp().resourcesByDirectory.get(directory);
+      if (resources != null) {
+        resources.forEach((id, resource) -> {
+          if (id.getPath().endsWith(".json")) {
+            map.put(resourceFinder.toResourceId(id), resource);
+          }
+        });
+      }
+      return map;
+    }
+
+    for (Map.Entry<Identifier, Resource> entry : resourceFinder.findResources(manager).entrySet()) {
+      if (((ResourceAccessor) entry.getValue()).getInputSupplier() instanceof ImmediateInputSupplier<?> im) {
+        map.put(resourceFinder.toResourceId(entry.getKey()), im.resource());
+      }
+    }
+    return map;
+  }
+}
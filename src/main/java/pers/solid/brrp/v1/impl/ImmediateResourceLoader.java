@@ -6,6 +6,8 @@ import net.minecraft.util.profiler.Profiler;
 import org.jetbrains.annotations.ApiStatus;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 @ApiStatus.AvailableSince("1.1.0")
 public interface ImmediateResourceLoader {
@@ -15,4 +17,24 @@ public interface ImmediateResourceLoader {
 
   default void applyImmediate$brrp(Map<Identifier, Object> prepared, ResourceManager manager, Profiler profiler) {
   }
+
+  /**
+   * Accept the immediate resources collected when the reloader prepares resources in the prepare executor. By default, they are kept until {@link #prepareImmediate$brrp} is called.
+   */
+  default void acceptPreparedImmediate$brrp(Map<Identifier, Object> prepared) {
+  }
+
+  /**
+   * Evaluate the immediate resources after the reloader prepares resources and before it waits for other reloaders, for reloaders that {@linkplain #appliesImmediateWithVanilla$brrp() apply immediate resources with vanilla}, so that applying resources does not wait for the evaluation. The evaluation should be scheduled on the prepare executor instead of blocking the thread, which is one of the workers of the executor.
+   */
+  default CompletableFuture<Void> evaluatePreparedImmediate$brrp(ResourceManager manager, Profiler profiler, Executor prepareExecutor) {
+    return CompletableFuture.completedFuture(null);
+  }
+
+  /**
+   * @return Whether immediate resources are applied together with other resources when the reloader applies them. In this case, {@link #prepareImmediate$brrp} and {@link #applyImmediate$brrp} are not called after the reloader applies.
+   */
+  default boolean appliesImmediateWithVanilla$brrp() {
+    return false;
+  }
 }
@@ -0,0 +1,69 @@
+package pers.solid.brrp.v1.impl;
+
+import net.minecraft.resource.InputSupplier;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * The supplier of a lazy resource, which is evaluated only when required for the first time. Unlike {@link com.google.common.base.Suppliers#memoize}, the evaluated content is stored as a {@link PayloadSupplier}, so that it can be compressed, deduplicated and spilled like other binary resources.
+ */
+@ApiStatus.Internal
+public final class LazyPayloadSupplier implements OpenableResourceSupplier {
+  private final Supplier<byte[]> delegate;
+  private final Function<byte[], PayloadSupplier> store;
+  private final InputSupplier<InputStream> inputSupplier = this::openStream;
+  private volatile @Nullable PayloadSupplier materialized;
+
+  /**
+   * @param delegate The function to evaluate the content.
+   * @param store    The function to store the evaluated content.
+   */
+  public LazyPayloadSupplier(Supplier<byte[]> delegate, Function<byte[], PayloadSupplier> store) {
+    this.delegate = delegate;
+    this.store = store;
+  }
+
+  /**
+   * @return The supplier of evaluated content, or {@code null} if it has not been evaluated.
+   */
+  public @Nullable PayloadSupplier getMaterialized() {
+    return materialized;
+  }
+
+  public PayloadSupplier materialize() {
+    PayloadSupplier materialized = this.materialized;
+    if (materialized == null) {
+      synchronized (this) {
+        materialized = this.materialized;
+        if (materialized == null) {
+          this.materialized = materialized = store.apply(delegate.get());
+        }
+      }
+    }
+    return materialized;
+  }
+
+  @Override
+  public byte[] get() {
+    return materialize().get();
+  }
+
+  @Override
+  public InputSupplier<InputStream> inputSupplier() {
+    return inputSupplier;
+  }
+
+  public InputStream openStream() throws IOException {
+    return materialize().openStream();
+  }
+
+  public void writeTo(OutputStream outputStream) throws IOException {
+    materialize().writeTo(outputStream);
+  }
+}
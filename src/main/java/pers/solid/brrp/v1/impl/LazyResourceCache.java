@@ -0,0 +1,102 @@
+package pers.solid.brrp.v1.impl;
+
+import org.jetbrains.annotations.ApiStatus;
+import pers.solid.brrp.v1.api.LazyCacheStats;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>The cache of the evaluated contents of {@link CachedLazySupplier}s in a runtime resource pack. The total length of cached contents is kept within a budget, and the least recently used contents are evicted when it is exceeded. The contents are held with soft references, so they may also be collected when the memory is low.</p>
+ * <p>Evicted or collected contents are evaluated again when they are required next time.</p>
+ */
+@ApiStatus.Internal
+public class LazyResourceCache {
+  /**
+   * The cached suppliers in access order, and the lengths of their cached contents.
+   */
+  private final LinkedHashMap<CachedLazySupplier, Integer> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private volatile long budget = -1;
+  private long cachedBytes;
+
+  /**
+   * @return Whether lazy resources should be cached in this cache, instead of being kept after evaluated.
+   */
+  public boolean isEnabled() {
+    return budget >= 0;
+  }
+
+  /**
+   * @param budget The maximum total length of cached contents. A negative value means not using the cache.
+   */
+  public synchronized void setBudget(long budget) {
+    this.budget = budget;
+    evictOverBudget();
+  }
+
+  void recordHit(CachedLazySupplier supplier) {
+    hits.increment();
+    synchronized (this) {
+      // touch the entry to make it most recently used
+      entries.get(supplier);
+    }
+  }
+
+  void recordMiss() {
+    misses.increment();
+  }
+
+  synchronized void put(CachedLazySupplier supplier, int length) {
+    final Integer previous = entries.put(supplier, length);
+    cachedBytes += length - (previous == null ? 0 : previous);
+    evictOverBudget();
+  }
+
+  /**
+   * Called when the cached content of the supplier is found collected by the garbage collector.
+   */
+  synchronized void onCollected(CachedLazySupplier supplier) {
+    final Integer length = entries.remove(supplier);
+    if (length != null) {
+      cachedBytes -= length;
+      evictions.increment();
+    }
+  }
+
+  /**
+   * Stop caching the contents of suppliers that are no longer in the pack.
+   *
+   * @param liveSuppliers All suppliers that are still in the pack.
+   */
+  public synchronized void retainAll(Set<?> liveSuppliers) {
+    for (Iterator<Map.Entry<CachedLazySupplier, Integer>> iterator = entries.entrySet().iterator(); iterator.hasNext(); ) {
+      final Map.Entry<CachedLazySupplier, Integer> entry = iterator.next();
+      if (!liveSuppliers.contains(entry.getKey())) {
+        iterator.remove();
+        cachedBytes -= entry.getValue();
+        entry.getKey().evict();
+      }
+    }
+  }
+
+  private void evictOverBudget() {
+    final long budget = Math.max(this.budget, 0);
+    for (Iterator<Map.Entry<CachedLazySupplier, Integer>> iterator = entries.entrySet().iterator(); cachedBytes > budget && iterator.hasNext(); ) {
+      final Map.Entry<CachedLazySupplier, Integer> eldest = iterator.next();
+      iterator.remove();
+      cachedBytes -= eldest.getValue();
+      eldest.getKey().evict();
+      evictions.increment();
+    }
+  }
+
+  public synchronized LazyCacheStats getStats() {
+    return new LazyCacheStats(hits.sum(), misses.sum(), evictions.sum(), entries.size(), cachedBytes);
+  }
+}
@@ -0,0 +1,17 @@
+package pers.solid.brrp.v1.impl;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+@ApiStatus.Internal
+public interface LifecycledResourceManagerExtension {
+  /**
+   * @return The index of immediate resources in the runtime resource packs of the resource manager, which is built when first called.
+   */
+  ImmediateResourceIndex getImmediateResourceIndex$brrp();
+
+  /**
+   * @return The barrier of async resources begun when the resource manager is created, or {@code null} if there is nothing to wait for or it has been taken. It is taken only once.
+   */
+  @Nullable ReloadBarrier takeReloadBarrier$brrp();
+}
@@ -0,0 +1,49 @@
+package pers.solid.brrp.v1.impl;
+
+import net.minecraft.resource.ResourceType;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+import pers.solid.brrp.v1.api.RuntimeResourcePack;
+
+import java.util.EnumMap;
+import java.util.Objects;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * The pack function that reuses the result of the last call for the same resource type, as long as the invalidation key is not changed. It is used by {@link pers.solid.brrp.v1.RRPEventHelper#registerCachedPack} and {@link pers.solid.brrp.v1.RRPEventHelper#registerCachedPacks}, so that reloading resources does not regenerate packs whose inputs are not changed.
+ *
+ * @param <K> The type of the invalidation key, which should implement {@link Object#equals(Object)}.
+ * @param <R> The type of the result, which is a pack or a collection of packs.
+ */
+@ApiStatus.Internal
+public final class MemoizedPackFunction<K, R> implements Function<ResourceType, R> {
+  private final Function<ResourceType, K> keyFunction;
+  private final BiFunction<ResourceType, K, R> packFunction;
+  private final EnumMap<ResourceType, Entry<K, R>> entries = new EnumMap<>(ResourceType.class);
+
+  /**
+   * @param keyFunction  The function to get the current invalidation key of the resource type, which should be cheap.
+   * @param packFunction The function to build the result, which is called only if there is no result for the key.
+   */
+  public MemoizedPackFunction(Function<ResourceType, K> keyFunction, BiFunction<ResourceType, K, R> packFunction) {
+    this.keyFunction = keyFunction;
+    this.packFunction = packFunction;
+  }
+
+  @Override
+  public synchronized R apply(ResourceType type) {
+    final K key = keyFunction.apply(type);
+    final @Nullable Entry<K, R> entry = entries.get(type);
+    if (entry != null && Objects.equals(entry.key, key)) {
+      RuntimeResourcePack.LOGGER.debug("Reusing runtime resource packs of {} built with key {}.", type, key);
+      return entry.result;
+    }
+    final R result = packFunction.apply(type, key);
+    entries.put(type, new Entry<>(key, result));
+    return result;
+  }
+
+  private record Entry<K, R>(K key, R result) {
+  }
+}
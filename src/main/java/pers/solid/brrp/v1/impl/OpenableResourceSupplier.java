@@ -0,0 +1,18 @@
+package pers.solid.brrp.v1.impl;
+
+import net.minecraft.resource.InputSupplier;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.io.InputStream;
+import java.util.function.Supplier;
+
+/**
+ * The supplier of a binary resource in a {@link RuntimeResourcePackImpl} that owns a reusable {@link InputSupplier}. It is returned by {@link RuntimeResourcePackImpl#open} and {@link RuntimeResourcePackImpl#findResources}, so looking up resources does not allocate new objects.
+ */
+@ApiStatus.Internal
+public interface OpenableResourceSupplier extends Supplier<byte[]> {
+  /**
+   * @return The input supplier to open the content, which is the same object each time.
+   */
+  InputSupplier<InputStream> inputSupplier();
+}
@@ -0,0 +1,119 @@
+package pers.solid.brrp.v1.impl;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>Packs the contents of small binary resources into large direct (off-heap) buffers, called slabs. Each content is addressed by its slab, offset and length in a {@link ResourcePayload.InArena} payload, so that there are no separate arrays for each resource in the heap.</p>
+ * <p>Slabs are only appended to, and are never written again after they are released, because streams, snapshots and old storages may still read from payloads of removed resources. When resources are removed, {@link #reset} releases the slabs that no longer contain contents in use, which are freed when they are collected. If the slabs in use are mostly empty, the contents in use are copied into new slabs, and the old slabs are released as well.</p>
+ */
+@ApiStatus.Internal
+public class PayloadArena {
+  /**
+   * The size of each slab, which is also the maximum size of a content that can be stored in the arena.
+   */
+  public static final int SLAB_SIZE = 1 << 20;
+  /**
+   * The ratio of bytes in use to bytes of slabs in use, below which contents are compacted.
+   */
+  private static final double COMPACTION_THRESHOLD = 0.5;
+  private final List<ByteBuffer> slabs = new ArrayList<>();
+  private @Nullable ByteBuffer currentSlab;
+
+  /**
+   * Copy the stored content of the payload into the arena.
+   *
+   * @return The payload in the arena, or the original payload if it is too large.
+   */
+  public synchronized ResourcePayload allocate(ResourcePayload payload) {
+    final byte[] stored;
+    final boolean deflated;
+    switch (payload) {
+      case ResourcePayload.OfBytes ofBytes -> {
+        stored = ofBytes.bytes();
+        deflated = false;
+      }
+      case ResourcePayload.Deflated deflatedPayload -> {
+        stored = deflatedPayload.compressed();
+        deflated = true;
+      }
+      default -> {
+        return payload;
+      }
+    }
+    if (stored.length > SLAB_SIZE) {
+      return payload;
+    }
+    if (currentSlab == null || currentSlab.remaining() < stored.length) {
+      currentSlab = newSlab();
+    }
+    final int offset = currentSlab.position();
+    currentSlab.put(stored);
+    return new ResourcePayload.InArena(currentSlab, offset, stored.length, payload.length(), deflated);
+  }
+
+  /**
+   * @return A newly allocated slab, which becomes the last slab in use.
+   */
+  private ByteBuffer newSlab() {
+    final ByteBuffer slab = ByteBuffer.allocateDirect(SLAB_SIZE);
+    slabs.add(slab);
+    return slab;
+  }
+
+  /**
+   * @return The total size of slabs in use.
+   */
+  public synchronized long getAllocatedBytes() {
+    return (long) slabs.size() * SLAB_SIZE;
+  }
+
+  /**
+   * Release the slabs whose contents are no longer in use, and compact the contents in use if the slabs are mostly empty. Released slabs are never written again, so that payloads read before the reset stay valid.
+   *
+   * @param liveSuppliers All suppliers that are still in the pack.
+   */
+  public synchronized void reset(Iterable<PayloadSupplier> liveSuppliers) {
+    final List<PayloadSupplier> inArena = new ArrayList<>();
+    final Set<PayloadSupplier> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+    final Map<ByteBuffer, Long> liveBytesBySlab = new IdentityHashMap<>();
+    long liveBytes = 0;
+    for (PayloadSupplier supplier : liveSuppliers) {
+      if (supplier.payload() instanceof ResourcePayload.InArena payload && visited.add(supplier)) {
+        inArena.add(supplier);
+        liveBytesBySlab.merge(payload.slab(), (long) payload.storedLength(), Long::sum);
+        liveBytes += payload.storedLength();
+      }
+    }
+
+    slabs.removeIf(slab -> !liveBytesBySlab.containsKey(slab));
+    if (currentSlab != null && !liveBytesBySlab.containsKey(currentSlab)) {
+      currentSlab = null;
+    }
+    if (slabs.isEmpty() || liveBytes >= COMPACTION_THRESHOLD * slabs.size() * SLAB_SIZE) {
+      return;
+    }
+
+    // Copy the contents in use into new slabs, and release the old slabs.
+    slabs.clear();
+    currentSlab = null;
+    for (PayloadSupplier supplier : inArena) {
+      final ResourcePayload.InArena old = (ResourcePayload.InArena) supplier.payload();
+      if (currentSlab == null || currentSlab.remaining() < old.storedLength()) {
+        currentSlab = newSlab();
+      }
+      final int offset = currentSlab.position();
+      currentSlab.put(offset, old.slab(), old.offset(), old.storedLength());
+      currentSlab.position(offset + old.storedLength());
+      supplier.setPayload(new ResourcePayload.InArena(currentSlab, offset, old.storedLength(), old.length(), old.deflated()));
+    }
+  }
+}
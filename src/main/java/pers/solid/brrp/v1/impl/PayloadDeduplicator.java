@@ -0,0 +1,78 @@
+package pers.solid.brrp.v1.impl;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Makes binary resources with identical content share one {@link PayloadSupplier}, so that their content is stored only once. Contents are looked up by their 128-bit hashes, and compared byte by byte before being shared, so that a hash collision never serves the content of another resource.
+ */
+@ApiStatus.Internal
+public class PayloadDeduplicator {
+  private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+  private final Map<HashCode, PayloadSupplier> suppliers = new ConcurrentHashMap<>();
+  private final LongAdder savedBytes = new LongAdder();
+
+  /**
+   * Get the shared supplier of the content, or create one if the content has not been stored.
+   *
+   * @param factory   The function to create a supplier of the content.
+   * @param onCreated Called when the created supplier is used as the shared supplier.
+   */
+  public PayloadSupplier intern(byte[] data, Function<byte[], PayloadSupplier> factory, Consumer<PayloadSupplier> onCreated) {
+    final HashCode key = HASH_FUNCTION.hashBytes(data);
+    PayloadSupplier supplier = suppliers.get(key);
+    if (supplier == null) {
+      final PayloadSupplier created = factory.apply(data);
+      supplier = suppliers.putIfAbsent(key, created);
+      if (supplier == null) {
+        onCreated.accept(created);
+        return created;
+      }
+    }
+    if (!Arrays.equals(supplier.get(), data)) {
+      // hash collision, in which case the content is stored without being shared
+      final PayloadSupplier created = factory.apply(data);
+      onCreated.accept(created);
+      return created;
+    }
+    savedBytes.add(data.length);
+    return supplier;
+  }
+
+  /**
+   * Forget the suppliers that are no longer in the pack, so that they will not be shared by new resources, and recompute the saved bytes from the resources that still share contents.
+   *
+   * @param liveSuppliers The suppliers of all resources in the pack, in which a shared supplier appears once for each resource using it.
+   */
+  public synchronized void retainAll(Iterable<PayloadSupplier> liveSuppliers) {
+    final Map<PayloadSupplier, Integer> references = new IdentityHashMap<>();
+    for (PayloadSupplier supplier : liveSuppliers) {
+      references.merge(supplier, 1, Integer::sum);
+    }
+    suppliers.values().removeIf(supplier -> !references.containsKey(supplier));
+    long saved = 0;
+    for (PayloadSupplier supplier : suppliers.values()) {
+      // suppliers interned after the iteration above are used by one resource
+      saved += (long) (references.getOrDefault(supplier, 1) - 1) * supplier.payload().length();
+    }
+    savedBytes.reset();
+    savedBytes.add(saved);
+  }
+
+  /**
+   * @return The total length of contents that were not stored because the identical content had been stored.
+   */
+  public long getSavedBytes() {
+    return savedBytes.sum();
+  }
+}
@@ -0,0 +1,233 @@
+package pers.solid.brrp.v1.impl;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+import pers.solid.brrp.v1.api.RuntimeResourcePack;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * <p>Keeps the binary resources of a runtime resource pack in the heap within a memory budget. When the total size of payloads in the heap exceeds the budget, cold payloads are written into a temporary file of the pack, and are replaced with {@link ResourcePayload.Mapped} payloads that read from the memory-mapped region of the file.</p>
+ * <p>Cold payloads are chosen with the "second chance" algorithm: payloads are checked in the order they are added, and payloads that have been read since last check are skipped once.</p>
+ * <p>The file only grows when spilling. It is deleted when no spilled payloads are used in the pack, such as after clearing all resources.</p>
+ */
+@ApiStatus.Internal
+public class PayloadSpiller {
+  /**
+   * The maximum size of a region to be written and mapped at once.
+   */
+  private static final int MAX_BATCH_BYTES = 64 << 20;
+  private final String filePrefix;
+  private final Queue<PayloadSupplier> candidates = new ConcurrentLinkedQueue<>();
+  private final AtomicLong residentBytes = new AtomicLong();
+  /**
+   * Suppliers are tracked concurrently with the read lock, and {@link #reset} recounts them with the write lock, so that a supplier tracked during the reset is neither lost nor counted twice.
+   */
+  private final ReadWriteLock resetLock = new ReentrantReadWriteLock();
+  private volatile long budget = -1;
+  private @Nullable Path file;
+  private @Nullable FileChannel channel;
+  private long fileLength;
+
+  /**
+   * @param name The name of the pack, used in the name of the temporary file.
+   */
+  public PayloadSpiller(String name) {
+    this.filePrefix = "brrp-" + name.replaceAll("[^a-zA-Z0-9_.-]", "_") + "-";
+  }
+
+  /**
+   * @param budget The maximum number of bytes of payloads in the heap. A negative value means no limit.
+   */
+  public void setBudget(long budget) {
+    this.budget = budget;
+    if (budget >= 0 && residentBytes.get() > budget) {
+      spill();
+    }
+  }
+
+  public long getResidentBytes() {
+    return residentBytes.get();
+  }
+
+  public synchronized long getSpilledBytes() {
+    return fileLength;
+  }
+
+  /**
+   * Start tracking a newly created supplier, and spill cold payloads if the budget is exceeded.
+   */
+  public void track(PayloadSupplier supplier) {
+    final ResourcePayload payload = supplier.payload();
+    if (!payload.inHeap()) {
+      return;
+    }
+    final long resident;
+    resetLock.readLock().lock();
+    try {
+      candidates.add(supplier);
+      resident = residentBytes.addAndGet(payload.retainedBytes());
+    } finally {
+      resetLock.readLock().unlock();
+    }
+    final long budget = this.budget;
+    if (budget >= 0 && resident > budget) {
+      spill();
+    }
+  }
+
+  /**
+   * Recount the payloads after some resources are removed, as the removed resources should not be counted or spilled any longer. If no spilled payloads are still in use, the file will be deleted.
+   *
+   * @param liveSuppliers All suppliers that are still in the pack.
+   */
+  public synchronized void reset(Iterable<PayloadSupplier> liveSuppliers) {
+    resetLock.writeLock().lock();
+    try {
+      resetCandidates(liveSuppliers);
+    } finally {
+      resetLock.writeLock().unlock();
+    }
+  }
+
+  private void resetCandidates(Iterable<PayloadSupplier> liveSuppliers) {
+    candidates.clear();
+    long resident = 0;
+    boolean hasMapped = false;
+    final Set<PayloadSupplier> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (PayloadSupplier supplier : liveSuppliers) {
+      if (!visited.add(supplier)) continue;
+      final ResourcePayload payload = supplier.payload();
+      if (payload.inHeap()) {
+        candidates.add(supplier);
+        resident += payload.retainedBytes();
+      } else if (payload instanceof ResourcePayload.Mapped) {
+        hasMapped = true;
+      }
+    }
+    residentBytes.set(resident);
+    if (!hasMapped) {
+      closeFile();
+    }
+  }
+
+  private synchronized void spill() {
+    final long budget = this.budget;
+    if (budget < 0) {
+      return;
+    }
+    final List<PayloadSupplier> batch = new ArrayList<>();
+    long batchBytes = 0, pendingFreed = 0;
+    int secondChances = candidates.size();
+    while (residentBytes.get() - pendingFreed > budget) {
+      final PayloadSupplier supplier = candidates.poll();
+      if (supplier == null) {
+        break;
+      }
+      final ResourcePayload payload = supplier.payload();
+      if (!payload.inHeap()) {
+        continue;
+      }
+      if (supplier.pollAccessed() && secondChances-- > 0) {
+        candidates.add(supplier);
+        continue;
+      }
+      batch.add(supplier);
+      batchBytes += payload.storedLength();
+      pendingFreed += payload.retainedBytes();
+      if (batchBytes >= MAX_BATCH_BYTES) {
+        if (!writeBatch(batch)) return;
+        batch.clear();
+        batchBytes = pendingFreed = 0;
+      }
+    }
+    writeBatch(batch);
+  }
+
+  /**
+   * Write the payloads into the file, map the written region, and replace the payloads.
+   *
+   * @return Whether the payloads are successfully written. If not, they are kept in the heap.
+   */
+  private boolean writeBatch(List<PayloadSupplier> batch) {
+    if (batch.isEmpty()) {
+      return true;
+    }
+    final long start = fileLength;
+    final ResourcePayload[] payloads = new ResourcePayload[batch.size()];
+    final MappedByteBuffer mapped;
+    try {
+      final FileChannel channel = openFile();
+      long position = start;
+      for (int i = 0; i < payloads.length; i++) {
+        payloads[i] = batch.get(i).payload();
+        final ByteBuffer src = storedBytes(payloads[i]);
+        while (src.hasRemaining()) {
+          position += channel.write(src, position);
+        }
+      }
+      mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, position - start);
+      fileLength = position;
+    } catch (IOException e) {
+      RuntimeResourcePack.LOGGER.warn("Failed to spill {} resources to {}. They are kept in memory.", batch.size(), file, e);
+      batch.forEach(candidates::add);
+      return false;
+    }
+
+    int offset = 0;
+    for (int i = 0; i < payloads.length; i++) {
+      final ResourcePayload payload = payloads[i];
+      final int storedLength = payload.storedLength();
+      final ResourcePayload.Mapped spilled = new ResourcePayload.Mapped(mapped.slice(offset, storedLength), payload.length(), payload instanceof ResourcePayload.Deflated);
+      offset += storedLength;
+      batch.get(i).setPayload(spilled);
+      residentBytes.addAndGet(-payload.retainedBytes());
+    }
+    return true;
+  }
+
+  private static ByteBuffer storedBytes(ResourcePayload payload) {
+    return switch (payload) {
+      case ResourcePayload.OfBytes ofBytes -> ByteBuffer.wrap(ofBytes.bytes());
+      case ResourcePayload.Deflated deflated -> ByteBuffer.wrap(deflated.compressed());
+      default -> ByteBuffer.wrap(payload.toByteArray());
+    };
+  }
+
+  private FileChannel openFile() throws IOException {
+    if (channel == null) {
+      file = Files.createTempFile(filePrefix, ".spill");
+      file.toFile().deleteOnExit();
+      channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      fileLength = 0;
+    }
+    return channel;
+  }
+
+  private void closeFile() {
+    if (channel == null) {
+      return;
+    }
+    try {
+      channel.close();
+      // the mapped regions are still valid until collected, and on some systems the file cannot be deleted until then
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      RuntimeResourcePack.LOGGER.debug("Failed to delete spill file {}, it will be deleted on exit.", file, e);
+    }
+    channel = null;
+    file = null;
+    fileLength = 0;
+  }
+}
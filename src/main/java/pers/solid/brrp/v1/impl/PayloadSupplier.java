@@ -0,0 +1,89 @@
+package pers.solid.brrp.v1.impl;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import net.minecraft.resource.InputSupplier;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The supplier of a binary resource whose content is already known, stored as a {@link ResourcePayload}. Unlike {@link com.google.common.base.Suppliers#ofInstance}, the content can be opened as a stream without copying, and the stored form can be replaced without modifying the maps in {@link ResourceStorage}.
+ */
+@ApiStatus.Internal
+public final class PayloadSupplier implements OpenableResourceSupplier {
+  private final InputSupplier<InputStream> inputSupplier = this::openStream;
+  private volatile @NotNull ResourcePayload payload;
+  /**
+   * Whether the content has been read since the last time {@link PayloadSpiller} checked it. It is used to choose cold resources to be spilled.
+   */
+  private volatile boolean accessed;
+  /**
+   * The hash of the content, which is computed when required for the first time.
+   */
+  private volatile @Nullable HashCode fingerprint;
+
+  public PayloadSupplier(@NotNull ResourcePayload payload) {
+    this.payload = payload;
+  }
+
+  public @NotNull ResourcePayload payload() {
+    return payload;
+  }
+
+  @Override
+  public InputSupplier<InputStream> inputSupplier() {
+    return inputSupplier;
+  }
+
+  public void setPayload(@NotNull ResourcePayload payload) {
+    this.payload = payload;
+  }
+
+  /**
+   * @return The 128-bit hash of the content, which is computed once and kept, so that contents can be compared without reading both of them again.
+   */
+  public HashCode fingerprint() {
+    HashCode fingerprint = this.fingerprint;
+    if (fingerprint == null) {
+      this.fingerprint = fingerprint = Hashing.murmur3_128().hashBytes(payload.toByteArray());
+    }
+    return fingerprint;
+  }
+
+  /**
+   * @return Whether the content is the same as the content of another supplier, compared by lengths and fingerprints.
+   */
+  public boolean hasSameContent(PayloadSupplier other) {
+    return other == this || other.payload.length() == payload.length() && other.fingerprint().equals(fingerprint());
+  }
+
+  /**
+   * @return Whether the content has been read since the last call of this method.
+   */
+  boolean pollAccessed() {
+    final boolean accessed = this.accessed;
+    if (accessed) this.accessed = false;
+    return accessed;
+  }
+
+  @Override
+  public byte[] get() {
+    accessed = true;
+    return payload.toByteArray();
+  }
+
+  public InputStream openStream() throws IOException {
+    accessed = true;
+    return payload.openStream();
+  }
+
+  public void writeTo(OutputStream outputStream) throws IOException {
+    accessed = true;
+    payload.writeTo(outputStream);
+  }
+}
@@ -0,0 +1,140 @@
+package pers.solid.brrp.v1.impl;
+
+import net.minecraft.resource.ResourcePack;
+import net.minecraft.resource.ResourceType;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static pers.solid.brrp.v1.api.RuntimeResourcePack.LOGGER;
+
+/**
+ * <p>Waits for async resources of runtime resource packs before the resources are loaded. Otherwise, the first reload thread that opens a pending async resource would be blocked, and the failure would be thrown as a plain {@link RuntimeException}. Before waiting, it also {@linkplain RuntimeResourcePackImpl#onReloadStarting prepares} runtime resource packs that have released resources to regenerate or removed contents to release.</p>
+ * <p>The barrier is {@linkplain #begin begun} when the packs are registered, and {@linkplain #take taken} by the resource manager after it has scanned all packs. When the reload starts, the preparation of reloaders is {@linkplain #gate gated} behind the waiting, which runs in the prepare executor, so neither the render thread nor the server thread is blocked. Slow, failed and timed-out resources are logged.</p>
+ */
+@ApiStatus.Internal
+public final class ReloadBarrier {
+  private static final ThreadLocal<ReloadBarrier> CURRENT = new ThreadLocal<>();
+  private static volatile Duration timeout = Duration.ofSeconds(Long.getLong("brrp.reloadBarrier.timeoutSeconds", 60));
+  private final ResourceType type;
+  private final List<RuntimeResourcePackImpl> preparedPacks;
+  private final List<Entry> entries;
+  private final long startNanos = System.nanoTime();
+
+  private ReloadBarrier(ResourceType type, List<RuntimeResourcePackImpl> preparedPacks, List<Entry> entries) {
+    this.type = type;
+    this.preparedPacks = preparedPacks;
+    this.entries = entries;
+  }
+
+  /**
+   * @param timeout The maximum time to wait for async resources in each reload. Zero or negative means not waiting.
+   */
+  public static void setTimeout(Duration timeout) {
+    ReloadBarrier.timeout = timeout;
+  }
+
+  /**
+   * Collect the runtime resource packs to be prepared, and the async resources of registered runtime resource packs that are not reported yet. Called when a resource manager is being created.
+   */
+  public static void begin(ResourceType type, List<ResourcePack> packs) {
+    CURRENT.remove();
+    final boolean waits = !timeout.isZero() && !timeout.isNegative();
+    final List<RuntimeResourcePackImpl> preparedPacks = new ArrayList<>();
+    final List<Entry> entries = new ArrayList<>();
+    for (ResourcePack pack : packs) {
+      if (pack instanceof RuntimeResourcePackImpl runtimeResourcePack) {
+        if (runtimeResourcePack.needsReloadPreparation(type)) {
+          preparedPacks.add(runtimeResourcePack);
+        }
+        if (waits) {
+          for (AsyncResourceSupplier supplier : runtimeResourcePack.drainAsyncResources(type)) {
+            entries.add(new Entry(runtimeResourcePack.getDisplayName().getString(), supplier, supplier.future().isDone()));
+          }
+        }
+      }
+    }
+    if (!preparedPacks.isEmpty() || !entries.isEmpty()) {
+      CURRENT.set(new ReloadBarrier(type, preparedPacks, entries));
+    }
+  }
+
+  /**
+   * Take the barrier begun by {@link #begin} in this thread, without waiting. Called after the resource manager is created, which keeps the barrier until the reload starts.
+   */
+  public static @Nullable ReloadBarrier take() {
+    final @Nullable ReloadBarrier barrier = CURRENT.get();
+    CURRENT.remove();
+    return barrier;
+  }
+
+  /**
+   * Wait for the async resources in the prepare executor, and defer the tasks of the returned executor until the waiting completes.
+   *
+   * @param prepareExecutor The executor that reloaders prepare resources in.
+   * @return The executor to be used by reloaders to prepare resources.
+   */
+  public Executor gate(Executor prepareExecutor) {
+    final CompletableFuture<Void> awaited = CompletableFuture.runAsync(this::await, prepareExecutor);
+    return task -> {
+      if (awaited.isDone()) {
+        prepareExecutor.execute(task);
+      } else {
+        awaited.whenComplete((unused, throwable) -> prepareExecutor.execute(task));
+      }
+    };
+  }
+
+  private void await() {
+    for (RuntimeResourcePackImpl pack : preparedPacks) {
+      pack.onReloadStarting(type);
+    }
+    final long deadline = startNanos + timeout.toNanos();
+    final List<String> slow = new ArrayList<>();
+    final List<String> timedOut = new ArrayList<>();
+    int failed = 0;
+    for (Entry entry : entries) {
+      final AsyncResourceSupplier supplier = entry.supplier;
+      try {
+        supplier.future().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        if (!entry.doneBeforeReload) {
+          slow.add(String.format("%s (%d ms)", supplier.name(), TimeUnit.NANOSECONDS.toMillis(supplier.elapsedNanos())));
+        }
+      } catch (TimeoutException e) {
+        timedOut.add(supplier.name());
+      } catch (ExecutionException | CancellationException e) {
+        failed++;
+        LOGGER.error("Async resource {} in runtime resource pack {} failed to evaluate.", supplier.name(), entry.packName, e instanceof ExecutionException ? e.getCause() : e);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        LOGGER.warn("Interrupted when waiting for async resources of runtime resource packs.");
+        return;
+      }
+    }
+    final long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    if (!slow.isEmpty()) {
+      LOGGER.info("Waited {} ms for {} async resources of runtime resource packs when loading {}: {}", waitedMillis, slow.size(), type.getDirectory(), String.join(", ", slow));
+    }
+    if (!timedOut.isEmpty()) {
+      LOGGER.warn("{} async resources of runtime resource packs are not evaluated within {} ms, and will be waited for when read: {}", timedOut.size(), timeout.toMillis(), String.join(", ", timedOut));
+    }
+    if (failed > 0) {
+      LOGGER.warn("{} async resources of runtime resource packs failed to evaluate.", failed);
+    }
+  }
+
+  /**
+   * @param doneBeforeReload Whether the resource had been evaluated when the barrier began, in which case it did not slow down the reload.
+   */
+  private record Entry(String packName, AsyncResourceSupplier supplier, boolean doneBeforeReload) {
+  }
+}
@@ -0,0 +1,99 @@
+package pers.solid.brrp.v1.impl;
+
+import net.minecraft.resource.ResourceType;
+import net.minecraft.util.Identifier;
+import org.apache.commons.lang3.function.FailableRunnable;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+import pers.solid.brrp.v1.api.ResourcePartition;
+
+import java.time.Duration;
+import java.util.function.Predicate;
+
+/**
+ * The partition of a {@link RuntimeResourcePackImpl}, which does not store resources by itself, but selects resources in the pack by their identifiers.
+ */
+@ApiStatus.Internal
+public final class ResourcePartitionImpl implements ResourcePartition {
+  private final RuntimeResourcePackImpl pack;
+  private final String name;
+  private final Predicate<Identifier> selector;
+  private volatile @Nullable FailableRunnable<InterruptedException> regenerationCallback;
+  private volatile long regenerations;
+  private volatile @Nullable Duration lastRegenerationTime;
+
+  ResourcePartitionImpl(RuntimeResourcePackImpl pack, String name, Predicate<Identifier> selector) {
+    this.pack = pack;
+    this.name = name;
+    this.selector = selector;
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public boolean contains(Identifier id) {
+    return selector.test(id);
+  }
+
+  @Override
+  public void setRegenerationCallback(@Nullable FailableRunnable<InterruptedException> regenerationCallback) {
+    this.regenerationCallback = regenerationCallback;
+  }
+
+  @Override
+  public boolean hasRegenerationCallback() {
+    return regenerationCallback != null;
+  }
+
+  @Override
+  public void clearResources() {
+    clearResources(ResourceType.CLIENT_RESOURCES);
+    clearResources(ResourceType.SERVER_DATA);
+  }
+
+  @Override
+  public void clearResources(ResourceType side) {
+    pack.removeResources(side, selector);
+  }
+
+  @Override
+  public void regenerate() throws InterruptedException {
+    if (regenerationCallback == null) {
+      return;
+    }
+    try {
+      regenerateDeferringCleanup();
+    } finally {
+      pack.onResourcesRemoved();
+    }
+  }
+
+  /**
+   * Regenerate the resources without cleaning up the stored contents of removed resources, so that partitions regenerated concurrently are cleaned up once after all of them complete.
+   */
+  synchronized void regenerateDeferringCleanup() throws InterruptedException {
+    final FailableRunnable<InterruptedException> regenerationCallback = this.regenerationCallback;
+    if (regenerationCallback == null) {
+      return;
+    }
+    final long startNanos = System.nanoTime();
+    pack.removeResourcesDeferringCleanup(ResourceType.CLIENT_RESOURCES, selector);
+    pack.removeResourcesDeferringCleanup(ResourceType.SERVER_DATA, selector);
+    regenerationCallback.run();
+    lastRegenerationTime = Duration.ofNanos(System.nanoTime() - startNanos);
+    regenerations++;
+  }
+
+  @Override
+  public Stats getStats() {
+    return new Stats(pack.countResources(ResourceType.CLIENT_RESOURCES, selector), pack.countResources(ResourceType.SERVER_DATA, selector), regenerations, lastRegenerationTime);
+  }
+
+  @Override
+  public String toString() {
+    return "ResourcePartition[" + name + "]";
+  }
+}
@@ -0,0 +1,213 @@
+package pers.solid.brrp.v1.impl;
+
+import org.apache.commons.io.output.ByteArrayOutputStream;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * <p>The stored form of the binary content of a resource. The content may be stored as a plain byte array, or in other forms that take less heap memory. It is held by a {@link PayloadSupplier}.</p>
+ * <p>There are several implementations:</p>
+ * <ul>
+ *   <li>{@link OfBytes}</li>
+ *   <li>{@link Deflated}</li>
+ *   <li>{@link Mapped}</li>
+ *   <li>{@link InArena}</li>
+ * </ul>
+ */
+@ApiStatus.Internal
+public interface ResourcePayload {
+  /**
+   * @return The length of the uncompressed content.
+   */
+  int length();
+
+  /**
+   * @return The length of the stored content, which may be compressed.
+   */
+  int storedLength();
+
+  /**
+   * @return The estimated number of bytes the payload takes in the heap.
+   */
+  long retainedBytes();
+
+  /**
+   * @return Whether the content is stored in the heap, which is counted in the memory budget of {@link PayloadSpiller}.
+   */
+  default boolean inHeap() {
+    return true;
+  }
+
+  /**
+   * Open a stream to read the content. It does not copy the whole content if not necessary.
+   */
+  InputStream openStream() throws IOException;
+
+  /**
+   * @return The content as a byte array. It may be a shared array which should not be modified.
+   */
+  default byte[] toByteArray() {
+    try (InputStream stream = openStream()) {
+      return stream.readNBytes(length());
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  default void writeTo(OutputStream outputStream) throws IOException {
+    try (InputStream stream = openStream()) {
+      stream.transferTo(outputStream);
+    }
+  }
+
+  /**
+   * Create a payload of the content, which will be compressed if its length is not less than the threshold and compressing does make it smaller.
+   *
+   * @param threshold The minimum length of the content to be compressed. A negative value means not compressing.
+   */
+  static ResourcePayload of(byte[] bytes, int threshold) {
+    if (threshold >= 0 && bytes.length >= threshold) {
+      final Deflated deflated = Deflated.deflate(bytes);
+      if (deflated.compressed.length < bytes.length) {
+        return deflated;
+      }
+    }
+    return new OfBytes(bytes);
+  }
+
+  /**
+   * The payload stored directly as a byte array.
+   */
+  record OfBytes(byte[] bytes) implements ResourcePayload {
+    @Override
+    public int length() {
+      return bytes.length;
+    }
+
+    @Override
+    public int storedLength() {
+      return bytes.length;
+    }
+
+    @Override
+    public long retainedBytes() {
+      return 16L + bytes.length;
+    }
+
+    @Override
+    public InputStream openStream() {
+      return new ByteArrayInputStream(bytes);
+    }
+
+    @Override
+    public byte[] toByteArray() {
+      return bytes;
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+      outputStream.write(bytes);
+    }
+  }
+
+  /**
+   * The payload compressed with deflate algorithm. It is decompressed when opening the stream.
+   *
+   * @param compressed The compressed content.
+   * @param length     The length of the uncompressed content.
+   */
+  record Deflated(byte[] compressed, int length) implements ResourcePayload {
+    public static Deflated deflate(byte[] bytes) {
+      final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+      final ByteArrayOutputStream stream = new ByteArrayOutputStream(Math.max(64, bytes.length / 4));
+      try (DeflaterOutputStream deflaterStream = new DeflaterOutputStream(stream, deflater)) {
+        deflaterStream.write(bytes);
+      } catch (IOException e) {
+        throw new RuntimeException("impossible.", e);
+      } finally {
+        deflater.end();
+      }
+      return new Deflated(stream.toByteArray(), bytes.length);
+    }
+
+    @Override
+    public int storedLength() {
+      return compressed.length;
+    }
+
+    @Override
+    public long retainedBytes() {
+      return 16L + compressed.length;
+    }
+
+    @Override
+    public InputStream openStream() {
+      return new InflaterInputStream(new ByteArrayInputStream(compressed));
+    }
+  }
+
+  /**
+   * The payload that has been spilled to a file by {@link PayloadSpiller}, and is read from the memory-mapped region of the file.
+   *
+   * @param buffer   The mapped region that contains the stored content, which may be compressed.
+   * @param length   The length of the uncompressed content.
+   * @param deflated Whether the stored content is compressed with deflate algorithm.
+   */
+  record Mapped(ByteBuffer buffer, int length, boolean deflated) implements ResourcePayload {
+    @Override
+    public int storedLength() {
+      return buffer.remaining();
+    }
+
+    @Override
+    public long retainedBytes() {
+      return 64L;
+    }
+
+    @Override
+    public boolean inHeap() {
+      return false;
+    }
+
+    @Override
+    public InputStream openStream() {
+      final InputStream stream = new ByteBufferInputStream(buffer.duplicate());
+      return deflated ? new InflaterInputStream(stream) : stream;
+    }
+  }
+
+  /**
+   * The payload stored in an off-heap slab of {@link PayloadArena}. Reading it does not copy the content.
+   *
+   * @param slab         The direct buffer that contains the stored content. Its position and limit are not used.
+   * @param offset       The offset of the stored content in the slab.
+   * @param storedLength The length of the stored content, which may be compressed.
+   * @param length       The length of the uncompressed content.
+   * @param deflated     Whether the stored content is compressed with deflate algorithm.
+   */
+  record InArena(ByteBuffer slab, int offset, int storedLength, int length, boolean deflated) implements ResourcePayload {
+    @Override
+    public long retainedBytes() {
+      return 32L;
+    }
+
+    @Override
+    public boolean inHeap() {
+      return false;
+    }
+
+    @Override
+    public InputStream openStream() {
+      final InputStream stream = new ByteBufferInputStream(slab.slice(offset, storedLength));
+      return deflated ? new InflaterInputStream(stream) : stream;
+    }
+  }
+}
@@ -0,0 +1,395 @@
+package pers.solid.brrp.v1.impl;
+
+import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+import pers.solid.brrp.v1.api.ImmediateResourceSupplier;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * <p>The storage of client resources or server data in a {@link RuntimeResourcePackImpl}.</p>
+ * <p>Besides the map from identifiers to resource suppliers, it maintains an index of paths grouped by namespaces, which is sorted by paths. Therefore, {@link #findResources} only visits the resources whose paths start with the prefix, and {@link #getNamespaces()} does not have to iterate all resources. The index is updated when putting, removing and clearing resources.</p>
+ * <p>It also keeps the identifiers of {@linkplain ImmediateResourceSupplier immediate resources}, so that they can be visited by {@link #forEachImmediateResource} without iterating all resources.</p>
+ * <p>The storage can be {@linkplain #seal() sealed} when no more resources are going to be added. In this case, the maps are replaced with compact sorted arrays. Putting resources into a sealed storage will unseal it first.</p>
+ */
+@ApiStatus.Internal
+public class ResourceStorage {
+  /**
+   * The maps of unsealed resources, which are replaced with empty ones when sealed, as cleared maps still keep their tables.
+   */
+  private volatile Map<Identifier, Supplier<byte[]>> entries = new ConcurrentHashMap<>();
+  private volatile Map<String, NavigableMap<String, Identifier>> pathsByNamespace = new ConcurrentHashMap<>();
+  private volatile Set<String> namespacesView = Collections.unmodifiableSet(pathsByNamespace.keySet());
+  private final Set<Identifier> immediateIds = ConcurrentHashMap.newKeySet();
+  private volatile @Nullable SealedContents sealed;
+
+  public @Nullable Supplier<byte[]> get(Identifier id) {
+    SealedContents sealed = this.sealed;
+    if (sealed != null) {
+      return sealed.get(id);
+    }
+    final Supplier<byte[]> supplier = entries.get(id);
+    if (supplier == null && (sealed = this.sealed) != null) {
+      // sealed after the check above
+      return sealed.get(id);
+    }
+    return supplier;
+  }
+
+  public boolean containsKey(Identifier id) {
+    return get(id) != null;
+  }
+
+  public void put(Identifier id, Supplier<byte[]> supplier) {
+    if (sealed != null) {
+      unseal();
+    }
+    entries.put(id, supplier);
+    indexPath(id);
+    updateImmediate(id, supplier);
+  }
+
+  /**
+   * Put the resource only if there is no resource with the identifier, which is atomic.
+   *
+   * @return The existing supplier, or {@code null} if the resource is put.
+   */
+  public @Nullable Supplier<byte[]> putIfAbsent(Identifier id, Supplier<byte[]> supplier) {
+    if (sealed != null) {
+      unseal();
+    }
+    final Supplier<byte[]> existing = entries.putIfAbsent(id, supplier);
+    if (existing == null) {
+      indexPath(id);
+      updateImmediate(id, supplier);
+    }
+    return existing;
+  }
+
+  /**
+   * Put the resource created by the factory only if there is no resource with the identifier, which is atomic. The factory is called only when the resource is going to be put, so that nothing is created for duplicate resources.
+   *
+   * @return Whether the resource is put.
+   */
+  public boolean putIfAbsent(Identifier id, Function<Identifier, ? extends Supplier<byte[]>> factory) {
+    if (sealed != null) {
+      unseal();
+    }
+    final boolean[] created = {false};
+    final Supplier<byte[]> supplier = entries.computeIfAbsent(id, key -> {
+      created[0] = true;
+      return factory.apply(key);
+    });
+    if (created[0]) {
+      indexPath(id);
+      updateImmediate(id, supplier);
+    }
+    return created[0];
+  }
+
+  /**
+   * Replace the supplier of an existing resource, which does not unseal the storage.
+   *
+   * @return Whether the resource exists and is replaced.
+   */
+  public synchronized boolean replace(Identifier id, Supplier<byte[]> supplier) {
+    final SealedContents sealed = this.sealed;
+    final boolean replaced = sealed != null ? sealed.replace(id, supplier) : entries.replace(id, supplier) != null;
+    if (replaced) {
+      updateImmediate(id, supplier);
+    }
+    return replaced;
+  }
+
+  /**
+   * Add the path to the index. The path map is updated inside {@link ConcurrentHashMap#compute}, so that it is never added to a path map that is being removed because it became empty.
+   */
+  private void indexPath(Identifier id) {
+    pathsByNamespace.compute(id.getNamespace(), (namespace, paths) -> {
+      if (paths == null) {
+        paths = new ConcurrentSkipListMap<>();
+      }
+      paths.put(id.getPath(), id);
+      return paths;
+    });
+  }
+
+  private void unindexPath(Identifier id) {
+    pathsByNamespace.computeIfPresent(id.getNamespace(), (namespace, paths) -> {
+      paths.remove(id.getPath());
+      return paths.isEmpty() ? null : paths;
+    });
+  }
+
+  private void updateImmediate(Identifier id, Supplier<byte[]> supplier) {
+    if (supplier instanceof ImmediateResourceSupplier<?>) {
+      immediateIds.add(id);
+    } else {
+      immediateIds.remove(id);
+    }
+  }
+
+  /**
+   * Visit all immediate resources, in no particular order.
+   */
+  public void forEachImmediateResource(BiConsumer<Identifier, ImmediateResourceSupplier<?>> consumer) {
+    for (Identifier id : immediateIds) {
+      if (get(id) instanceof ImmediateResourceSupplier<?> supplier) {
+        consumer.accept(id, supplier);
+      }
+    }
+  }
+
+  /**
+   * Visit all resources in the namespace whose paths start with the prefix, in the order of paths.
+   */
+  public void findResources(String namespace, String prefix, BiConsumer<Identifier, Supplier<byte[]>> consumer) {
+    final SealedContents sealed = this.sealed;
+    if (sealed != null) {
+      sealed.findResources(namespace, prefix, consumer);
+      return;
+    }
+    final NavigableMap<String, Identifier> paths = pathsByNamespace.get(namespace);
+    if (paths == null) {
+      return;
+    }
+    for (Map.Entry<String, Identifier> entry : paths.tailMap(prefix, true).entrySet()) {
+      if (!entry.getKey().startsWith(prefix)) {
+        // paths are sorted, so no more paths will start with the prefix
+        break;
+      }
+      final Supplier<byte[]> supplier = entries.get(entry.getValue());
+      if (supplier != null) {
+        consumer.accept(entry.getValue(), supplier);
+      }
+    }
+  }
+
+  /**
+   * @return The unmodifiable view of namespaces used in this storage.
+   */
+  public Set<String> getNamespaces() {
+    final SealedContents sealed = this.sealed;
+    return sealed != null ? sealed.namespaceSet : namespacesView;
+  }
+
+  public Iterable<Map.Entry<Identifier, Supplier<byte[]>>> entries() {
+    final SealedContents sealed = this.sealed;
+    return sealed != null ? sealed : entries.entrySet();
+  }
+
+  public int size() {
+    final SealedContents sealed = this.sealed;
+    return sealed != null ? sealed.size : entries.size();
+  }
+
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  public synchronized void clear() {
+    sealed = null;
+    entries.clear();
+    pathsByNamespace.clear();
+    immediateIds.clear();
+  }
+
+  /**
+   * Remove all resources whose suppliers match the predicate.
+   *
+   * @return The number of removed resources.
+   */
+  public int removeIf(Predicate<? super Supplier<byte[]>> predicate) {
+    return removeIf((id, supplier) -> predicate.test(supplier));
+  }
+
+  /**
+   * Remove all resources whose identifiers and suppliers match the predicate.
+   *
+   * @return The number of removed resources.
+   */
+  public synchronized int removeIf(BiPredicate<Identifier, ? super Supplier<byte[]>> predicate) {
+    unseal();
+    int removed = 0;
+    for (Iterator<Map.Entry<Identifier, Supplier<byte[]>>> iterator = entries.entrySet().iterator(); iterator.hasNext(); ) {
+      final Map.Entry<Identifier, Supplier<byte[]>> entry = iterator.next();
+      if (predicate.test(entry.getKey(), entry.getValue())) {
+        iterator.remove();
+        final Identifier id = entry.getKey();
+        immediateIds.remove(id);
+        unindexPath(id);
+        removed++;
+      }
+    }
+    return removed;
+  }
+
+  /**
+   * @return A new unsealed storage with the same resources, which is used to regenerate resources without modifying this storage.
+   */
+  public ResourceStorage copy() {
+    final ResourceStorage copy = new ResourceStorage();
+    for (Map.Entry<Identifier, Supplier<byte[]>> entry : entries()) {
+      copy.put(entry.getKey(), entry.getValue());
+    }
+    return copy;
+  }
+
+  public boolean isSealed() {
+    return sealed != null;
+  }
+
+  /**
+   * Compact the contents into sorted arrays, and release the maps, including the index of paths, which is rebuilt when {@linkplain #unseal() unsealed}. It should not be called when other threads are adding resources.
+   */
+  public synchronized void seal() {
+    if (sealed != null) {
+      return;
+    }
+    this.sealed = new SealedContents(pathsByNamespace, entries);
+    this.entries = new ConcurrentHashMap<>();
+    this.pathsByNamespace = new ConcurrentHashMap<>();
+    this.namespacesView = Collections.unmodifiableSet(pathsByNamespace.keySet());
+  }
+
+  /**
+   * Move the contents of the sealed arrays back to the maps, and rebuild the index of paths, so that resources can be added again.
+   */
+  public synchronized void unseal() {
+    final SealedContents sealed = this.sealed;
+    if (sealed == null) {
+      return;
+    }
+    for (int i = 0; i < sealed.namespaces.length; i++) {
+      final Identifier[] ids = sealed.ids[i];
+      final NavigableMap<String, Identifier> paths = new ConcurrentSkipListMap<>();
+      for (int j = 0; j < ids.length; j++) {
+        entries.put(ids[j], sealed.suppliers[i][j]);
+        paths.put(ids[j].getPath(), ids[j]);
+      }
+      pathsByNamespace.put(sealed.namespaces[i], paths);
+    }
+    this.sealed = null;
+  }
+
+  /**
+   * The immutable compact form of the contents. Namespaces are sorted, and for each namespace, identifiers are sorted by paths, with a parallel array of suppliers. Resources are looked up with binary search.
+   */
+  private static final class SealedContents implements Iterable<Map.Entry<Identifier, Supplier<byte[]>>> {
+    private final String[] namespaces;
+    private final Set<String> namespaceSet;
+    private final Identifier[][] ids;
+    private final Supplier<byte[]>[][] suppliers;
+    private final int size;
+
+    @SuppressWarnings("unchecked")
+    private SealedContents(Map<String, NavigableMap<String, Identifier>> pathsByNamespace, Map<Identifier, Supplier<byte[]>> entries) {
+      this.namespaces = pathsByNamespace.keySet().toArray(String[]::new);
+      Arrays.sort(namespaces);
+      this.namespaceSet = Set.of(namespaces);
+      this.ids = new Identifier[namespaces.length][];
+      this.suppliers = new Supplier[namespaces.length][];
+      int size = 0;
+      for (int i = 0; i < namespaces.length; i++) {
+        // the paths are already sorted in the index
+        final Identifier[] ids = pathsByNamespace.get(namespaces[i]).values().toArray(Identifier[]::new);
+        final Supplier<byte[]>[] suppliers = new Supplier[ids.length];
+        for (int j = 0; j < ids.length; j++) {
+          suppliers[j] = entries.get(ids[j]);
+        }
+        this.ids[i] = ids;
+        this.suppliers[i] = suppliers;
+        size += ids.length;
+      }
+      this.size = size;
+    }
+
+    /**
+     * @return The index of the first identifier whose path is not less than the path, or {@code -(insertion point) - 1} if not found, like {@link Arrays#binarySearch}.
+     */
+    private static int binarySearch(Identifier[] ids, String path) {
+      int low = 0, high = ids.length - 1;
+      while (low <= high) {
+        final int mid = (low + high) >>> 1;
+        final int cmp = ids[mid].getPath().compareTo(path);
+        if (cmp < 0) {
+          low = mid + 1;
+        } else if (cmp > 0) {
+          high = mid - 1;
+        } else {
+          return mid;
+        }
+      }
+      return -(low + 1);
+    }
+
+    private @Nullable Supplier<byte[]> get(Identifier id) {
+      final int i = Arrays.binarySearch(namespaces, id.getNamespace());
+      if (i < 0) {
+        return null;
+      }
+      final int j = binarySearch(ids[i], id.getPath());
+      return j < 0 ? null : suppliers[i][j];
+    }
+
+    private boolean replace(Identifier id, Supplier<byte[]> supplier) {
+      final int i = Arrays.binarySearch(namespaces, id.getNamespace());
+      if (i < 0) {
+        return false;
+      }
+      final int j = binarySearch(ids[i], id.getPath());
+      if (j < 0) {
+        return false;
+      }
+      suppliers[i][j] = supplier;
+      return true;
+    }
+
+    private void findResources(String namespace, String prefix, BiConsumer<Identifier, Supplier<byte[]>> consumer) {
+      final int i = Arrays.binarySearch(namespaces, namespace);
+      if (i < 0) {
+        return;
+      }
+      final Identifier[] ids = this.ids[i];
+      int j = binarySearch(ids, prefix);
+      if (j < 0) j = -j - 1;
+      for (; j < ids.length && ids[j].getPath().startsWith(prefix); j++) {
+        consumer.accept(ids[j], suppliers[i][j]);
+      }
+    }
+
+    @Override
+    public Iterator<Map.Entry<Identifier, Supplier<byte[]>>> iterator() {
+      return new Iterator<>() {
+        private int i = 0, j = 0;
+
+        @Override
+        public boolean hasNext() {
+          while (i < ids.length && j >= ids[i].length) {
+            i++;
+            j = 0;
+          }
+          return i < ids.length;
+        }
+
+        @Override
+        public Map.Entry<Identifier, Supplier<byte[]>> next() {
+          if (!hasNext()) {
+            throw new NoSuchElementException();
+          }
+          final Map.Entry<Identifier, Supplier<byte[]>> entry = Map.entry(ids[i][j], suppliers[i][j]);
+          j++;
+          return entry;
+        }
+      };
+    }
+  }
+}
@@ -1,7 +1,7 @@
 package pers.solid.brrp.v1.impl;
 
 import com.google.common.base.Suppliers;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.collect.Iterables;
 import com.google.gson.JsonElement;
 import com.mojang.serialization.JsonOps;
 import net.fabricmc.api.EnvType;
@@ -28,6 +28,7 @@ import org.apache.commons.io.input.CountingInputStream;
 import org.apache.commons.io.output.ByteArrayOutputStream;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.function.FailableFunction;
+import org.apache.commons.lang3.function.FailableRunnable;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
@@ -44,9 +45,11 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.IntUnaryOperator;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
@@ -59,12 +62,73 @@ import java.util.zip.ZipOutputStream;
  */
 @ApiStatus.Internal
 public class RuntimeResourcePackImpl extends AbstractRuntimeResourcePack implements ResourcePack {
-  public static final ExecutorService EXECUTOR_SERVICE = Executors.newFixedThreadPool(10, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("BRRP-Workers-%s").build());
+  public static final WorkerExecutor EXECUTOR_SERVICE = WorkerExecutor.fromSystemProperties();
+  /**
+   * The pool used by {@link #parallelGenerate}.
+   */
+  private static final ForkJoinPool GENERATION_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), pool -> {
+    final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+    thread.setName("BRRP-Generation-" + thread.getPoolIndex());
+    return thread;
+  }, null, false);
   private static final ResourcePackSource RUNTIME = ResourcePackSource.create(name -> Text.translatable("pack.nameAndSource", name, Text.translatable("pack.source.runtime")).formatted(Formatting.GRAY), true);
+  /**
+   * The estimated bytes of a map entry, its key object, the supplier object and its input supplier, excluding the characters of the key.
+   */
+  private static final long ENTRY_OVERHEAD = 112;
+  /**
+   * The estimated bytes of a supplier whose content is not known yet.
+   */
+  private static final long PENDING_SUPPLIER_BYTES = 64;
   public final BlockLootTableGenerator blockLootTableGenerator;
-  private final Map<Identifier, Supplier<byte[]>> data = new ConcurrentHashMap<>();
-  private final Map<Identifier, Supplier<byte[]>> assets = new ConcurrentHashMap<>();
-  private final Map<List<String>, Supplier<byte[]>> root = new ConcurrentHashMap<>();
+  private volatile ResourceStorage data = new ResourceStorage();
+  private volatile ResourceStorage assets = new ResourceStorage();
+  /**
+   * The root resources, whose keys are paths separated by {@code "/"}, such as {@code "pack.mcmeta"}. When {@linkplain #seal() sealed}, it is replaced with a compact immutable map, which is copied back to a {@link ConcurrentHashMap} by {@link #targetRoot()} before adding resources.
+   */
+  private volatile Map<String, Supplier<byte[]>> root = new ConcurrentHashMap<>();
+  private final Object rootLock = new Object();
+  private volatile boolean doubleBufferedRegeneration;
+  /**
+   * The copies of resources that are being regenerated with double buffering, to which resources are added instead of the published ones.
+   */
+  private volatile @Nullable Staging staging;
+  private volatile int compressionThreshold = -1;
+  private final PayloadSpiller spiller = new PayloadSpiller(getId());
+  private volatile @Nullable PayloadDeduplicator deduplicator;
+  private final PayloadArena arena = new PayloadArena();
+  private volatile int offHeapPayloadLimit = -1;
+  private final LazyResourceCache lazyCache = new LazyResourceCache();
+  private volatile boolean releasesImmediateResources;
+  /**
+   * The sides whose immediate resources have been released after a reload, which should be regenerated before the next reload, mapped to the namespaces of the side before releasing, which are still reported by {@link #getNamespaces}.
+   */
+  private final Map<ResourceType, Set<String>> releasedNamespaces = new ConcurrentHashMap<>();
+  /**
+   * The running regenerations of released sides, which other threads looking up resources of the side wait for.
+   */
+  private final Map<ResourceType, Restoration> restorations = new ConcurrentHashMap<>();
+  /**
+   * The async resources added since the last reload of each side, which are waited for by {@link ReloadBarrier}. Async root resources are read by reloads of both sides, so they are added to both queues.
+   */
+  private final Map<ResourceType, Queue<AsyncResourceSupplier>> pendingAsyncResources = Map.of(ResourceType.CLIENT_RESOURCES, new ConcurrentLinkedQueue<>(), ResourceType.SERVER_DATA, new ConcurrentLinkedQueue<>());
+  /**
+   * The last generation started by {@link #generateInBackground}, which is waited for when a resource that is not generated yet is read.
+   */
+  private volatile CompletableFuture<Void> backgroundGeneration = CompletableFuture.completedFuture(null);
+  /**
+   * The namespaces declared by running background generations, which are reported in {@link #getNamespaces} before resources in them are generated.
+   */
+  private volatile Set<String> backgroundNamespaces = Set.of();
+  private final Map<String, ResourcePartitionImpl> partitions = new ConcurrentHashMap<>();
+  /**
+   * The suppliers of resources before a regeneration that reports changes, which are considered in use until they are compared with the regenerated resources.
+   */
+  private volatile List<Collection<Supplier<byte[]>>> retainedSuppliers = List.of();
+  /**
+   * Whether storages have been replaced by {@link #regenerateBuffered}, so that the stored contents of removed resources should be released by {@link #onResourcesRemoved()} when the next reload starts.
+   */
+  private volatile boolean cleanupDeferred;
 
   @SuppressWarnings("DeprecatedIsStillUsed")
   @Deprecated(forRemoval = true)
@@ -102,6 +166,369 @@ public class RuntimeResourcePackImpl extends AbstractRuntimeResourcePack impleme
     return RuntimeResourcePack.serialize(object, GSON);
   }
 
+  @Override
+  public void setCompressionThreshold(int threshold) {
+    this.compressionThreshold = threshold;
+  }
+
+  @Override
+  public void setMemoryBudget(long budget) {
+    spiller.setBudget(budget);
+  }
+
+  @Override
+  public void setDeduplicatesResources(boolean b) {
+    if (!b) {
+      deduplicator = null;
+    } else if (deduplicator == null) {
+      deduplicator = new PayloadDeduplicator();
+    }
+  }
+
+  /**
+   * Create the supplier of the binary content, which may be compressed according to {@link #compressionThreshold}, and may be spilled to the file when exceeding the memory budget. If deduplicating is enabled, the supplier of identical content may be returned.
+   */
+  private PayloadSupplier storePayload(byte[] data) {
+    final PayloadDeduplicator deduplicator = this.deduplicator;
+    if (deduplicator != null) {
+      return deduplicator.intern(data, this::createPayloadSupplier, spiller::track);
+    }
+    final PayloadSupplier supplier = createPayloadSupplier(data);
+    spiller.track(supplier);
+    return supplier;
+  }
+
+  @Override
+  public void setOffHeapPayloadLimit(int maxLength) {
+    this.offHeapPayloadLimit = Math.min(maxLength, PayloadArena.SLAB_SIZE);
+  }
+
+  @Override
+  public void setLazyResourceCacheBudget(long budget) {
+    lazyCache.setBudget(budget);
+  }
+
+  @Override
+  public void setReleasesImmediateResourcesAfterReload(boolean b) {
+    this.releasesImmediateResources = b;
+  }
+
+  @Override
+  public void setDoubleBufferedRegeneration(boolean b) {
+    doubleBufferedRegeneration = b;
+  }
+
+  @Override
+  public boolean isDoubleBufferedRegeneration() {
+    return doubleBufferedRegeneration;
+  }
+
+  @Override
+  public void regenerate() throws InterruptedException {
+    if (doubleBufferedRegeneration) {
+      regenerateBuffered(null, super::regenerate);
+    } else {
+      super.regenerate();
+    }
+  }
+
+  @Override
+  public void regenerateSided(@NotNull ResourceType resourceType) throws InterruptedException {
+    if (doubleBufferedRegeneration) {
+      regenerateBuffered(resourceType, () -> super.regenerateSided(resourceType));
+    } else {
+      super.regenerateSided(resourceType);
+    }
+  }
+
+  @Override
+  public ChangeSet regenerateWithChanges() throws InterruptedException {
+    return regenerateTracked(null, super::regenerate);
+  }
+
+  @Override
+  public ChangeSet regenerateSidedWithChanges(@NotNull ResourceType resourceType) throws InterruptedException {
+    return regenerateTracked(resourceType, () -> super.regenerateSided(resourceType));
+  }
+
+  /**
+   * Run the regeneration, and compare the resources before and after it. Resources whose contents are not changed keep their previous suppliers, so that the storage of the new contents can be released.
+   *
+   * @param side The side to regenerate, or {@code null} to regenerate all resources, including root resources.
+   */
+  private synchronized ChangeSet regenerateTracked(@Nullable ResourceType side, FailableRunnable<InterruptedException> regeneration) throws InterruptedException {
+    final Map<Identifier, Supplier<byte[]>> previousAssets = side != ResourceType.SERVER_DATA ? snapshot(assets.entries()) : null;
+    final Map<Identifier, Supplier<byte[]>> previousData = side != ResourceType.CLIENT_RESOURCES ? snapshot(data.entries()) : null;
+    final Map<String, Supplier<byte[]>> previousRoot = side == null ? new HashMap<>(root) : null;
+    // the previous resources are kept in use until they are compared, so that their stored contents are not released during the regeneration
+    final List<Collection<Supplier<byte[]>>> retained = new ArrayList<>(3);
+    if (previousAssets != null) retained.add(previousAssets.values());
+    if (previousData != null) retained.add(previousData.values());
+    if (previousRoot != null) retained.add(previousRoot.values());
+    final ChangeSet changeSet;
+    final boolean buffered = doubleBufferedRegeneration;
+    retainedSuppliers = retained;
+    try {
+      if (buffered) {
+        regenerateBuffered(side, regeneration);
+      } else {
+        regeneration.run();
+      }
+      changeSet = new ChangeSet(
+          previousAssets == null ? ChangeSet.Changes.empty() : diff(previousAssets, assets.entries(), assets::replace),
+          previousData == null ? ChangeSet.Changes.empty() : diff(previousData, data.entries(), data::replace),
+          previousRoot == null ? ChangeSet.Changes.empty() : diff(previousRoot, root.entrySet(), targetRoot()::replace));
+    } finally {
+      retainedSuppliers = List.of();
+    }
+    // release the previous resources that are neither reused nor in the pack any longer, which may be still read from the replaced storages if double-buffered
+    if (buffered) {
+      cleanupDeferred = true;
+    } else {
+      onResourcesRemoved();
+    }
+    LOGGER.debug("Regenerated Runtime Resource Pack {}: {}", getDisplayName().getString(), changeSet);
+    return changeSet;
+  }
+
+  private static <K> Map<K, Supplier<byte[]>> snapshot(Iterable<Map.Entry<K, Supplier<byte[]>>> entries) {
+    final Map<K, Supplier<byte[]>> snapshot = new HashMap<>();
+    for (Map.Entry<K, Supplier<byte[]>> entry : entries) {
+      snapshot.put(entry.getKey(), entry.getValue());
+    }
+    return snapshot;
+  }
+
+  /**
+   * Compare the resources before and after the regeneration. If a resource whose content is known is replaced with the same content, the previous supplier is put back.
+   *
+   * @param reuse The function to put back the previous supplier.
+   */
+  private static <K> ChangeSet.Changes<K> diff(Map<K, Supplier<byte[]>> previous, Iterable<Map.Entry<K, Supplier<byte[]>>> current, BiConsumer<K, Supplier<byte[]>> reuse) {
+    final Set<K> added = new HashSet<>(), modified = new HashSet<>(), removed = new HashSet<>(previous.keySet());
+    int unchanged = 0;
+    for (Map.Entry<K, Supplier<byte[]>> entry : current) {
+      final K key = entry.getKey();
+      final Supplier<byte[]> previousSupplier = previous.get(key), currentSupplier = entry.getValue();
+      removed.remove(key);
+      if (previousSupplier == null) {
+        added.add(key);
+      } else if (previousSupplier == currentSupplier) {
+        unchanged++;
+      } else if (previousSupplier instanceof PayloadSupplier previousPayload && currentSupplier instanceof PayloadSupplier currentPayload && previousPayload.hasSameContent(currentPayload)) {
+        reuse.accept(key, previousSupplier);
+        unchanged++;
+      } else {
+        modified.add(key);
+      }
+    }
+    return new ChangeSet.Changes<>(Collections.unmodifiableSet(added), Collections.unmodifiableSet(removed), Collections.unmodifiableSet(modified), unchanged);
+  }
+
+  /**
+   * Run the regeneration on copies of the resources, and replace the resources with the copies after it completes. Resources read during the regeneration are the ones before it, so that reloads and dumps never see an empty or partial pack. If the regeneration fails, the copies are discarded.
+   * <p>Readers that got suppliers from the replaced storages may still be reading them, so the stored contents of removed resources are not released until the next reload starts.</p>
+   *
+   * @param side The side to regenerate, or {@code null} to regenerate all resources, including root resources.
+   */
+  private synchronized void regenerateBuffered(@Nullable ResourceType side, FailableRunnable<InterruptedException> regeneration) throws InterruptedException {
+    final Staging staging = new Staging(side != ResourceType.SERVER_DATA ? assets.copy() : null, side != ResourceType.CLIENT_RESOURCES ? data.copy() : null, side == null ? new ConcurrentHashMap<>(root) : null);
+    this.staging = staging;
+    boolean completed = false;
+    try {
+      regeneration.run();
+      completed = true;
+    } finally {
+      if (completed) {
+        if (staging.assets != null) assets = staging.assets;
+        if (staging.data != null) data = staging.data;
+        if (staging.root != null) root = staging.root;
+        cleanupDeferred = true;
+      }
+      this.staging = null;
+    }
+  }
+
+  /**
+   * @return The storage to add resources to, which is the copy being regenerated if any.
+   */
+  private ResourceStorage targetSys(ResourceType side) {
+    final Staging staging = this.staging;
+    if (staging != null) {
+      final ResourceStorage storage = side == ResourceType.CLIENT_RESOURCES ? staging.assets : staging.data;
+      if (storage != null) return storage;
+    }
+    return getSys(side);
+  }
+
+  /**
+   * @return The root resources to add resources to, which is the copy being regenerated if any.
+   */
+  private Map<String, Supplier<byte[]>> targetRoot() {
+    final Staging staging = this.staging;
+    if (staging != null && staging.root != null) {
+      return staging.root;
+    }
+    final Map<String, Supplier<byte[]>> root = this.root;
+    return root instanceof ConcurrentHashMap ? root : unsealRoot();
+  }
+
+  private Map<String, Supplier<byte[]>> unsealRoot() {
+    synchronized (rootLock) {
+      if (!(root instanceof ConcurrentHashMap)) {
+        root = new ConcurrentHashMap<>(root);
+      }
+      return root;
+    }
+  }
+
+  /**
+   * Called when a resource reload that uses this pack completes. If releasing immediate resources is enabled, the immediate resources of the side are removed, and will be regenerated in {@link #onReloadStarting(ResourceType)}, or when resources of the side are looked up before that.
+   */
+  public void onReloadCompleted(ResourceType type) {
+    if (!releasesImmediateResources || !hasSidedRegenerationCallback(type)) {
+      return;
+    }
+    final Set<String> namespaces = Set.copyOf(getSys(type).getNamespaces());
+    final int removed = getSys(type).removeIf(supplier -> supplier instanceof ImmediateResourceSupplier<?>);
+    if (removed > 0) {
+      releasedNamespaces.put(type, namespaces);
+      onResourcesRemoved();
+      LOGGER.debug("Released {} immediate resources of Runtime Resource Pack {} after reloading.", removed, getDisplayName().getString());
+    }
+  }
+
+  /**
+   * Called when this pack is going to be used in a resource reload. The stored contents of resources removed by double-buffered regenerations are released, and if the immediate resources of the side have been released, they are regenerated now.
+   */
+  public void onReloadStarting(ResourceType type) {
+    if (cleanupDeferred) {
+      onResourcesRemoved();
+    }
+    restoreReleasedResources(type);
+  }
+
+  /**
+   * @return Whether the stored contents of removed resources, or the released resources of the side, should be handled by {@link #onReloadStarting} before resources are loaded.
+   */
+  public boolean needsReloadPreparation(ResourceType type) {
+    return cleanupDeferred || releasedNamespaces.containsKey(type);
+  }
+
+  /**
+   * Regenerate the released immediate resources of the side, if they have been released. Other threads that look up resources of the side during the regeneration wait until it completes, so that they never miss released resources. The regeneration callback may look up resources in the thread running it, which does not wait.
+   *
+   * @return Whether the side had been released, in which case resources should be looked up again.
+   */
+  private boolean restoreReleasedResources(ResourceType type) {
+    if (!releasedNamespaces.containsKey(type)) {
+      return false;
+    }
+    final Restoration restoration = new Restoration(Thread.currentThread(), new CompletableFuture<>());
+    final Restoration running = restorations.putIfAbsent(type, restoration);
+    if (running != null) {
+      if (running.thread != Thread.currentThread()) {
+        running.future.join();
+      }
+      return true;
+    }
+    try {
+      if (!releasedNamespaces.containsKey(type)) {
+        // restored by another thread after the check above
+        return true;
+      }
+      LOGGER.debug("Regenerating released resources of Runtime Resource Pack {}.", getDisplayName().getString());
+      try {
+        regenerateSided(type);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        LOGGER.warn("Interrupted when regenerating released resources of Runtime Resource Pack {}.", getDisplayName().getString(), e);
+      } catch (RuntimeException e) {
+        LOGGER.error("Failed to regenerate released resources of Runtime Resource Pack {}.", getDisplayName().getString(), e);
+      }
+      releasedNamespaces.remove(type);
+      return true;
+    } finally {
+      restorations.remove(type, restoration);
+      restoration.future.complete(null);
+    }
+  }
+
+  /**
+   * @param thread The thread running the regeneration.
+   * @param future The future completed when the regeneration completes.
+   */
+  private record Restoration(Thread thread, CompletableFuture<Void> future) {
+  }
+
+
+  /**
+   * Create the supplier of a lazy resource, which is kept after evaluated, or kept in the cache if the cache is enabled.
+   */
+  private Supplier<byte[]> createLazySupplier(Supplier<byte[]> delegate) {
+    return lazyCache.isEnabled() ? new CachedLazySupplier(delegate, lazyCache) : new LazyPayloadSupplier(delegate, this::storePayload);
+  }
+
+  private PayloadSupplier createPayloadSupplier(byte[] data) {
+    ResourcePayload payload = ResourcePayload.of(data, compressionThreshold);
+    final int offHeapPayloadLimit = this.offHeapPayloadLimit;
+    if (offHeapPayloadLimit >= 0 && payload.storedLength() <= offHeapPayloadLimit) {
+      payload = arena.allocate(payload);
+    }
+    return new PayloadSupplier(payload);
+  }
+
+  /**
+   * @return All suppliers of client resources, server data and root resources, including the copies being regenerated and the {@linkplain #retainedSuppliers previous resources} to be compared.
+   */
+  private Iterable<Supplier<byte[]>> allSuppliers() {
+    final Iterable<Supplier<byte[]>> published = Iterables.concat(Iterables.transform(Iterables.concat(assets.entries(), data.entries()), Map.Entry::getValue), root.values());
+    final Staging staging = this.staging;
+    final Iterable<Supplier<byte[]>> retained = Iterables.concat(retainedSuppliers);
+    return Iterables.concat(published, staging == null ? List.of() : staging.suppliers(), retained);
+  }
+
+  /**
+   * @return The suppliers of all binary resources whose contents are stored, including evaluated lazy resources. Deduplicated suppliers may appear more than once.
+   */
+  private Iterable<PayloadSupplier> payloadSuppliers() {
+    return Iterables.filter(Iterables.transform(allSuppliers(), supplier -> supplier instanceof LazyPayloadSupplier lazy ? lazy.getMaterialized() : supplier), PayloadSupplier.class);
+  }
+
+  /**
+   * Called after some resources are cleared, so that the stored contents of them are no longer tracked. It visits all resources in the pack, and contents stored but not put into the pack yet are no longer tracked either, so it should not be called while other threads are generating resources.
+   */
+  void onResourcesRemoved() {
+    cleanupDeferred = false;
+    spiller.reset(payloadSuppliers());
+    arena.reset(payloadSuppliers());
+    final PayloadDeduplicator deduplicator = this.deduplicator;
+    if (deduplicator != null) {
+      deduplicator.retainAll(payloadSuppliers());
+    }
+    final Set<Supplier<byte[]>> liveSuppliers = Collections.newSetFromMap(new IdentityHashMap<>());
+    Iterables.addAll(liveSuppliers, Iterables.filter(allSuppliers(), CachedLazySupplier.class));
+    lazyCache.retainAll(liveSuppliers);
+    if (pendingAsyncResources.values().stream().anyMatch(queue -> !queue.isEmpty())) {
+      liveSuppliers.clear();
+      Iterables.addAll(liveSuppliers, Iterables.filter(allSuppliers(), AsyncResourceSupplier.class));
+      pendingAsyncResources.values().forEach(queue -> queue.removeIf(supplier -> !liveSuppliers.contains(supplier)));
+    }
+  }
+
+  /**
+   * Remove and return the async resources of the side added since the last call for the side, so that a reload of the side can wait for them. Async resources of the other side are kept for its next reload.
+   */
+  public List<AsyncResourceSupplier> drainAsyncResources(ResourceType type) {
+    final Queue<AsyncResourceSupplier> queue = pendingAsyncResources.get(type);
+    final List<AsyncResourceSupplier> drained = new ArrayList<>();
+    AsyncResourceSupplier supplier;
+    while ((supplier = queue.poll()) != null) {
+      drained.add(supplier);
+    }
+    return drained;
+  }
+
   //<editor-fold desc="check duplicate methods">
 
   @Override
@@ -130,17 +557,21 @@ public class RuntimeResourcePackImpl extends AbstractRuntimeResourcePack impleme
   }
 
   private void checkDuplicateAsset(Identifier id) {
-    if (!allowsDuplicateResource && assets.containsKey(id)) {
-      throw new IllegalArgumentException(String.format("Duplicate asset id %s in runtime resource pack %s.", id, getDisplayName().getString()));
+    if (!allowsDuplicateResource && targetSys(ResourceType.CLIENT_RESOURCES).containsKey(id)) {
+      throw duplicateResource(ResourceType.CLIENT_RESOURCES, id);
     }
   }
 
   private void checkDuplicateData(Identifier id) {
-    if (!allowsDuplicateResource && data.containsKey(id)) {
-      throw new IllegalArgumentException(String.format("Duplicate data id %s in runtime resource pack %s.", id, getDisplayName().getString()));
+    if (!allowsDuplicateResource && targetSys(ResourceType.SERVER_DATA).containsKey(id)) {
+      throw duplicateResource(ResourceType.SERVER_DATA, id);
     }
   }
 
+  private IllegalArgumentException duplicateResource(ResourceType resourceType, Identifier id) {
+    return new IllegalArgumentException(String.format(resourceType == ResourceType.CLIENT_RESOURCES ? "Duplicate asset id %s in runtime resource pack %s." : "Duplicate data id %s in runtime resource pack %s.", id, getDisplayName().getString()));
+  }
+
   private void checkDuplicateResource(ResourceType resourceType, Identifier id) {
     switch (resourceType) {
       case CLIENT_RESOURCES -> checkDuplicateAsset(id);
@@ -150,8 +581,61 @@ public class RuntimeResourcePackImpl extends AbstractRuntimeResourcePack impleme
   //</editor-fold>
 
   private void checkDuplicateRootResource(String path) {
-    if (!allowsDuplicateResource && root.containsKey(Arrays.asList(path.split("/")))) {
-      throw new IllegalArgumentException(String.format("Duplicate root resource id %s in runtime resource pack %s!", path, getDisplayName().getString()));
+    if (!allowsDuplicateResource && targetRoot().containsKey(path)) {
+      throw duplicateRootResource(path);
+    }
+  }
+
+  private IllegalArgumentException duplicateRootResource(String path) {
+    return new IllegalArgumentException(String.format("Duplicate root resource id %s in runtime resource pack %s!", path, getDisplayName().getString()));
+  }
+
+  /**
+   * Put the resource into the pack. If duplicate resources are not allowed, the resource is put only if absent, which is atomic, so that resources added in parallel do not silently overwrite each other. The checking methods above are still called before evaluating or storing the content, so that duplicate resources fail early.
+   */
+  private void putResource(ResourceType resourceType, Identifier id, Supplier<byte[]> supplier) {
+    final ResourceStorage sys = targetSys(resourceType);
+    if (allowsDuplicateResource) {
+      sys.put(id, supplier);
+    } else if (sys.putIfAbsent(id, supplier) != null) {
+      throw duplicateResource(resourceType, id);
+    }
+  }
+
+  private void putRootResource(String path, Supplier<byte[]> supplier) {
+    final Map<String, Supplier<byte[]>> root = targetRoot();
+    if (allowsDuplicateResource) {
+      root.put(path, supplier);
+    } else if (root.putIfAbsent(path, supplier) != null) {
+      throw duplicateRootResource(path);
+    }
+  }
+
+  /**
+   * Store the binary content and put it into the pack. If duplicate resources are not allowed, the content is stored only after the resource is claimed, so that the content of a duplicate resource is not spilled, allocated in the arena or kept by the deduplicator.
+   */
+  private void putPayload(ResourceType resourceType, Identifier id, byte[] data) {
+    final ResourceStorage sys = targetSys(resourceType);
+    if (allowsDuplicateResource) {
+      sys.put(id, storePayload(data));
+    } else if (!sys.putIfAbsent(id, unused -> storePayload(data))) {
+      throw duplicateResource(resourceType, id);
+    }
+  }
+
+  private void putRootPayload(String path, byte[] data) {
+    final Map<String, Supplier<byte[]>> root = targetRoot();
+    if (allowsDuplicateResource) {
+      root.put(path, storePayload(data));
+      return;
+    }
+    final boolean[] created = {false};
+    root.computeIfAbsent(path, unused -> {
+      created[0] = true;
+      return storePayload(data);
+    });
+    if (!created[0]) {
+      throw duplicateRootResource(path);
     }
   }
 
@@ -184,91 +668,78 @@ public class RuntimeResourcePackImpl extends AbstractRuntimeResourcePack impleme
 
   @Override
   public Future<byte[]> addAsyncResource(ResourceType type, Identifier path, FailableFunction<Identifier, byte[], Exception> data) {
-    Future<byte[]> future = EXECUTOR_SERVICE.submit(() -> data.apply(path));
-    final Map<Identifier, Supplier<byte[]>> sys = this.getSys(type);
     checkDuplicateResource(type, path);
-    sys.put(path, () -> {
-      try {
-        return future.get();
-      } catch (InterruptedException | ExecutionException e) {
-        throw new RuntimeException(e);
-      }
-    });
-    return future;
+    final AsyncResourceSupplier supplier = AsyncResourceSupplier.submit(EXECUTOR_SERVICE, type.getDirectory() + "/" + path.getNamespace() + "/" + path.getPath(), () -> data.apply(path));
+    putResource(type, path, supplier);
+    pendingAsyncResources.get(type).add(supplier);
+    return supplier.future();
   }
 
   @Override
   public void addLazyResource(ResourceType type, Identifier path, BiFunction<RuntimeResourcePack, Identifier, byte[]> func) {
-    final Map<Identifier, Supplier<byte[]>> sys = this.getSys(type);
     checkDuplicateResource(type, path);
-    sys.put(path, Suppliers.memoize(() -> func.apply(this, path)));
+    putResource(type, path, createLazySupplier(() -> SupplierWatchdog.time(() -> type.getDirectory() + "/" + path.getNamespace() + "/" + path.getPath(), () -> func.apply(this, path))));
   }
 
   @Override
   public byte[] addResource(ResourceType type, Identifier path, byte[] data) {
-    final Map<Identifier, Supplier<byte[]>> sys = this.getSys(type);
     checkDuplicateResource(type, path);
-    sys.put(path, Suppliers.ofInstance(data));
+    putPayload(type, path, data);
     return data;
   }
 
   @Override
   public Future<byte[]> addAsyncRootResource(String path, FailableFunction<String, byte[], Exception> data) {
     checkDuplicateRootResource(path);
-    Future<byte[]> future = EXECUTOR_SERVICE.submit(() -> data.apply(path));
-    this.root.put(Arrays.asList(path.split("/")), () -> {
-      try {
-        return future.get();
-      } catch (InterruptedException | ExecutionException e) {
-        throw new RuntimeException(e);
-      }
-    });
-    return future;
+    final AsyncResourceSupplier supplier = AsyncResourceSupplier.submit(EXECUTOR_SERVICE, path, () -> data.apply(path));
+    putRootResource(path, supplier);
+    pendingAsyncResources.values().forEach(queue -> queue.add(supplier));
+    return supplier.future();
   }
 
   @Override
   public void addLazyRootResource(String path, BiFunction<RuntimeResourcePack, String, byte[]> data) {
     checkDuplicateRootResource(path);
-    this.root.put(Arrays.asList(path.split("/")), Suppliers.memoize(() -> data.apply(this, path)));
+    putRootResource(path, createLazySupplier(() -> SupplierWatchdog.time(() -> path, () -> data.apply(this, path))));
   }
 
   @Override
   public byte[] addRootResource(String path, byte[] data) {
     checkDuplicateRootResource(path);
-    this.root.put(Arrays.asList(path.split("/")), () -> data);
+    putRootPayload(path, data);
     return data;
   }
 
   @Override
   public <T> void addDirectRootResource(String path, ImmediateResourceSupplier<T> data) {
     checkDuplicateRootResource(path);
-    this.root.put(Arrays.asList(path.split("/")), data);
+    putRootResource(path, data);
   }
 
   @Override
   public byte[] addAsset(Identifier id, byte[] data) {
     checkDuplicateAsset(id);
-    assets.put(id, Suppliers.ofInstance(data));
+    putPayload(ResourceType.CLIENT_RESOURCES, id, data);
     return data;
   }
 
   @Override
   public <T> void addImmediateAsset(Identifier id, ImmediateResourceSupplier<T> data) {
     checkDuplicateAsset(id);
-    assets.put(id, data);
+    putResource(ResourceType.CLIENT_RESOURCES, id, data);
   }
 
   @Override
   public byte[] addData(Identifier id, byte[] data) {
     checkDuplicateData(id);
-    this.data.put(id, Suppliers.ofInstance(data));
+    putPayload(ResourceType.SERVER_DATA, id, data);
     return data;
   }
 
   @Override
   public <T> void addImmediateData(Identifier id, ImmediateResourceSupplier<T> data) {
     checkDuplicateData(id);
-    this.data.put(id, data);
+    putResource(ResourceType.SERVER_DATA, id, data);
   }
 
   @Override
@@ -360,9 +831,208 @@ public class RuntimeResourcePackImpl extends AbstractRuntimeResourcePack impleme
     return EXECUTOR_SERVICE.submit(() -> action.accept(this));
   }
 
+  @Override
+  public <T> void parallelGenerate(Collection<T> elements, BiConsumer<RuntimeResourcePack, T> generator) {
+    final Object[] array = elements.toArray();
+    final RuntimeException[] exceptions = new RuntimeException[array.length];
+    final int threshold = Math.max(1, array.length / (GENERATION_POOL.getParallelism() * 8));
+    GENERATION_POOL.invoke(new GenerationTask<>(array, exceptions, 0, array.length, threshold, generator));
+
+    final List<GenerationException.Failure> failures = new ArrayList<>();
+    for (int i = 0; i < array.length; i++) {
+      if (exceptions[i] != null) {
+        failures.add(new GenerationException.Failure(array[i], exceptions[i]));
+      }
+    }
+    if (!failures.isEmpty()) {
+      throw new GenerationException(getDisplayName().getString(), array.length, failures);
+    }
+  }
+
+  @Override
+  public GenerationGraph createGenerationGraph() {
+    return new GenerationGraph(this, EXECUTOR_SERVICE);
+  }
+
+  @Override
+  public synchronized CompletableFuture<Void> generateInBackground(Executor executor, Collection<String> namespaces, Consumer<RuntimeResourcePack> generator) {
+    final CompletableFuture<Void> previous = backgroundGeneration;
+    final Set<String> declaredNamespaces = new HashSet<>(namespaces);
+    if (!previous.isDone()) {
+      declaredNamespaces.addAll(backgroundNamespaces);
+    }
+    backgroundNamespaces = Set.copyOf(declaredNamespaces);
+    // generations run one after another, even if the previous one failed, which has been logged
+    final CompletableFuture<Void> generation = previous.exceptionally(e -> null).thenRunAsync(() -> {
+      final long startNanos = System.nanoTime();
+      generator.accept(this);
+      LOGGER.info("Generated Runtime Resource Pack {} in the background in {} ms.", getDisplayName().getString(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }, executor);
+    generation.whenComplete((unused, throwable) -> {
+      if (throwable != null) {
+        LOGGER.error("Failed to generate Runtime Resource Pack {} in the background.", getDisplayName().getString(), throwable);
+      }
+    });
+    backgroundGeneration = generation;
+    return generation;
+  }
+
+  @Override
+  public ResourcePartition createPartition(String name, Predicate<Identifier> selector) {
+    final ResourcePartitionImpl partition = new ResourcePartitionImpl(this, name, selector);
+    if (partitions.putIfAbsent(name, partition) != null) {
+      throw new IllegalArgumentException(String.format("Duplicate partition %s in runtime resource pack %s.", name, getDisplayName().getString()));
+    }
+    return partition;
+  }
+
+  @Override
+  public @Nullable ResourcePartition getPartition(String name) {
+    return partitions.get(name);
+  }
+
+  @Override
+  public Collection<ResourcePartition> getPartitions() {
+    return List.copyOf(partitions.values());
+  }
+
+  @Override
+  public void regeneratePartitions(Collection<String> names) throws InterruptedException {
+    final List<ResourcePartitionImpl> selected = new ArrayList<>(names.size());
+    for (String name : names) {
+      final ResourcePartitionImpl partition = partitions.get(name);
+      if (partition == null) {
+        throw new IllegalArgumentException(String.format("Unknown partition %s in runtime resource pack %s.", name, getDisplayName().getString()));
+      }
+      selected.add(partition);
+    }
+    final List<Future<?>> futures = new ArrayList<>(selected.size());
+    for (ResourcePartitionImpl partition : selected) {
+      futures.add(EXECUTOR_SERVICE.submit(() -> {
+        partition.regenerateDeferringCleanup();
+        return null;
+      }));
+    }
+    final List<GenerationException.Failure> failures = new ArrayList<>();
+    try {
+      for (int i = 0; i < futures.size(); i++) {
+        try {
+          futures.get(i).get();
+        } catch (ExecutionException e) {
+          failures.add(new GenerationException.Failure(selected.get(i).getName(), e.getCause()));
+        }
+      }
+    } catch (InterruptedException e) {
+      futures.forEach(future -> future.cancel(true));
+      throw e;
+    }
+    // cleaned up once after all partitions complete, as it visits the whole pack, and would not track resources being generated by other partitions
+    onResourcesRemoved();
+    if (!failures.isEmpty()) {
+      throw new GenerationException(getDisplayName().getString(), selected.size(), failures);
+    }
+  }
+
+  /**
+   * Remove the client resources or server data whose identifiers match the filter, which is used by partitions.
+   *
+   * @return The number of removed resources.
+   */
+  int removeResources(ResourceType side, Predicate<Identifier> filter) {
+    final int removed = removeResourcesDeferringCleanup(side, filter);
+    if (removed > 0) {
+      onResourcesRemoved();
+    }
+    return removed;
+  }
+
+  /**
+   * Remove resources like {@link #removeResources}, but without {@linkplain #onResourcesRemoved() cleaning up} the stored contents, which should be done by the caller when no other resources are being generated.
+   *
+   * @return The number of removed resources.
+   */
+  int removeResourcesDeferringCleanup(ResourceType side, Predicate<Identifier> filter) {
+    return targetSys(side).removeIf((id, supplier) -> filter.test(id));
+  }
+
+  /**
+   * @return The number of client resources or server data whose identifiers match the filter.
+   */
+  int countResources(ResourceType side, Predicate<Identifier> filter) {
+    int count = 0;
+    for (Map.Entry<Identifier, Supplier<byte[]>> entry : getSys(side).entries()) {
+      if (filter.test(entry.getKey())) count++;
+    }
+    return count;
+  }
+
+  /**
+   * Wait for the background generation if it has not completed.
+   *
+   * @param generation The background generation got before looking up resources, so that resources generated after the lookup are not missed.
+   * @return Whether the generation had not completed, in which case resources should be looked up again.
+   */
+  private boolean awaitBackgroundGeneration(CompletableFuture<Void> generation) {
+    if (generation.isDone()) {
+      return false;
+    }
+    try {
+      SupplierWatchdog.time(() -> "background generation of " + getDisplayName().getString(), generation::join);
+    } catch (CompletionException | CancellationException e) {
+      // the failure has been logged, and resources generated before the failure are still available
+    }
+    return true;
+  }
+
+  /**
+   * Wait for the background generation if it has not completed and declares the namespace, so that looking up resources in other namespaces is never blocked.
+   *
+   * @see #awaitBackgroundGeneration(CompletableFuture)
+   */
+  private boolean awaitBackgroundGeneration(CompletableFuture<Void> generation, String namespace) {
+    return !generation.isDone() && backgroundNamespaces.contains(namespace) && awaitBackgroundGeneration(generation);
+  }
+
+  /**
+   * The task of {@link #parallelGenerate} that generates a range of elements, which is split until it is small enough. The exception of each element is recorded at the same index.
+   */
+  private final class GenerationTask<T> extends RecursiveAction {
+    private final Object[] elements;
+    private final RuntimeException[] exceptions;
+    private final int start, end, threshold;
+    private final BiConsumer<RuntimeResourcePack, T> generator;
+
+    private GenerationTask(Object[] elements, RuntimeException[] exceptions, int start, int end, int threshold, BiConsumer<RuntimeResourcePack, T> generator) {
+      this.elements = elements;
+      this.exceptions = exceptions;
+      this.start = start;
+      this.end = end;
+      this.threshold = threshold;
+      this.generator = generator;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected void compute() {
+      if (end - start > threshold) {
+        final int middle = (start + end) >>> 1;
+        invokeAll(new GenerationTask<>(elements, exceptions, start, middle, threshold, generator), new GenerationTask<>(elements, exceptions, middle, end, threshold, generator));
+        return;
+      }
+      for (int i = start; i < end; i++) {
+        try {
+          generator.accept(RuntimeResourcePackImpl.this, (T) elements[i]);
+        } catch (RuntimeException e) {
+          exceptions[i] = e;
+        }
+      }
+    }
+  }
+
   @Override
   public void dumpInPath(Path output, @Nullable ResourceType dumpResourceType, int @Nullable [] stat) {
     LOGGER.info("Dumping {} in the path {}. The path will be cleared.", getDisplayName().getString(), output);
+    awaitBackgroundGeneration(backgroundGeneration);
 
     this.lookupMemorizedSupplier = Suppliers.memoize(lookupSupplier);
     this.registryOpsMemorizedSupplier = Suppliers.memoize(registryOpsSupplier);
@@ -377,8 +1047,8 @@ public class RuntimeResourcePackImpl extends AbstractRuntimeResourcePack impleme
         stat[0] = stat[1] = stat[2] = 0;
       }
       if (!root.isEmpty()) {
-        for (Map.Entry<List<String>, Supplier<byte[]>> e : this.root.entrySet()) {
-          Path rootPath = output.resolve(String.join("/", e.getKey()));
+        for (Map.Entry<String, Supplier<byte[]>> e : this.root.entrySet()) {
+          Path rootPath = output.resolve(e.getKey());
           this.writeAtPath(e.getValue(), rootPath);
           if (stat != null) stat[0] += 1;
           if (Thread.interrupted()) {
@@ -387,7 +1057,7 @@ public class RuntimeResourcePackImpl extends AbstractRuntimeResourcePack impleme
         }
       }
 
-      if (!root.containsKey(List.of("pack.mcmeta"))) {
+      if (!root.containsKey("pack.mcmeta")) {
         Path rootPath = output.resolve("pack.mcmeta");
         this.writeAtPath(new ImmediateResourceSupplier.OfJson.Impl(createMetadataJson()), rootPath);
         if (stat != null) stat[0] += 1;
@@ -396,7 +1066,7 @@ public class RuntimeResourcePackImpl extends AbstractRuntimeResourcePack impleme
       if (dumpResourceType != ResourceType.SERVER_DATA && !assets.isEmpty()) {
         Path assetsPath = output.resolve("assets");
         Files.createDirectories(assetsPath);
-        for (Map.Entry<Identifier, Supplier<byte[]>> entry : this.assets.entrySet()) {
+        for (Map.Entry<Identifier, Supplier<byte[]>> entry : this.assets.entries()) {
           this.write(assetsPath, entry.getKey(), entry.getValue());
           if (stat != null) stat[1] += 1;
           if (Thread.interrupted()) throw new InterruptedException("Dumping server data");
@@ -405,7 +1075,7 @@ public class RuntimeResourcePackImpl extends AbstractRuntimeResourcePack impleme
       if (dumpResourceType != ResourceType.CLIENT_RESOURCES && !data.isEmpty()) {
         Path dataPath = output.resolve("data");
         Files.createDirectories(dataPath);
-        for (Map.Entry<Identifier, Supplier<byte[]>> entry : this.data.entrySet()) {
+        for (Map.Entry<Identifier, Supplier<byte[]>> entry : this.data.entries()) {
           this.write(dataPath, entry.getKey(), entry.getValue());
           if (stat != null) stat[2] += 1;
           if (Thread.interrupted()) throw new InterruptedException("Dumping client resources");
@@ -426,13 +1096,13 @@ public class RuntimeResourcePackImpl extends AbstractRuntimeResourcePack impleme
         String s = file.toString();
         if (s.startsWith("assets")) {
           String path = s.substring("assets".length() + 1);
-          this.load(path, this.assets, Files.readAllBytes(file));
+          this.load(path, targetSys(ResourceType.CLIENT_RESOURCES), Files.readAllBytes(file));
         } else if (s.startsWith("data")) {
           String path = s.substring("data".length() + 1);
-          this.load(path, this.data, Files.readAllBytes(file));
+          this.load(path, targetSys(ResourceType.SERVER_DATA), Files.readAllBytes(file));
         } else {
           byte[] data = Files.readAllBytes(file);
-          this.root.put(Arrays.asList(s.split("/")), () -> data);
+          targetRoot().put(s, storePayload(data));
         }
       }
     }
@@ -440,22 +1110,23 @@ public class RuntimeResourcePackImpl extends AbstractRuntimeResourcePack impleme
 
   @Override
   public void dump(ZipOutputStream zos, @Nullable ResourceType dumpResourceType, int[] stat) throws IOException {
+    awaitBackgroundGeneration(backgroundGeneration);
     this.lookupMemorizedSupplier = Suppliers.memoize(lookupSupplier);
     this.registryOpsMemorizedSupplier = Suppliers.memoize(registryOpsSupplier);
 
-    for (Map.Entry<List<String>, Supplier<byte[]>> entry : this.root.entrySet()) {
-      zos.putNextEntry(new ZipEntry(String.join("/", entry.getKey())));
+    for (Map.Entry<String, Supplier<byte[]>> entry : this.root.entrySet()) {
+      zos.putNextEntry(new ZipEntry(entry.getKey()));
       this.writeToStream(entry.getValue(), zos);
       if (stat != null) stat[0] += 1;
     }
-    if (!root.containsKey(List.of("pack.mcmeta"))) {
+    if (!root.containsKey("pack.mcmeta")) {
       zos.putNextEntry(new ZipEntry("pack.mcmeta"));
       this.writeToStream(new ImmediateResourceSupplier.OfJson.Impl(createMetadataJson()), zos);
       if (stat != null) stat[0] += 1;
     }
 
     if (dumpResourceType != ResourceType.SERVER_DATA && !assets.isEmpty()) {
-      for (Map.Entry<Identifier, Supplier<byte[]>> entry : this.assets.entrySet()) {
+      for (Map.Entry<Identifier, Supplier<byte[]>> entry : this.assets.entries()) {
         Identifier id = entry.getKey();
         zos.putNextEntry(new ZipEntry("assets/" + id.getNamespace() + "/" + id.getPath()));
         this.writeToStream(entry.getValue(), zos);
@@ -464,7 +1135,7 @@ public class RuntimeResourcePackImpl extends AbstractRuntimeResourcePack impleme
     }
 
     if (dumpResourceType != ResourceType.CLIENT_RESOURCES && !data.isEmpty()) {
-      for (Map.Entry<Identifier, Supplier<byte[]>> entry : this.data.entrySet()) {
+      for (Map.Entry<Identifier, Supplier<byte[]>> entry : this.data.entries()) {
         Identifier id = entry.getKey();
         zos.putNextEntry(new ZipEntry("data/" + id.getNamespace() + "/" + id.getPath()));
         this.writeToStream(entry.getValue(), zos);
@@ -480,13 +1151,13 @@ public class RuntimeResourcePackImpl extends AbstractRuntimeResourcePack impleme
       String s = entry.toString();
       if (s.startsWith("assets")) {
         String path = s.substring("assets".length() + 1);
-        this.load(path, this.assets, this.read(entry, stream));
+        this.load(path, targetSys(ResourceType.CLIENT_RESOURCES), this.read(entry, stream));
       } else if (s.startsWith("data")) {
         String path = s.substring("data".length() + 1);
-        this.load(path, this.data, this.read(entry, stream));
+        this.load(path, targetSys(ResourceType.SERVER_DATA), this.read(entry, stream));
       } else {
         byte[] data = this.read(entry, stream);
-        this.root.put(Arrays.asList(s.split("/")), () -> data);
+        targetRoot().put(s, storePayload(data));
       }
     }
   }
@@ -499,44 +1170,69 @@ public class RuntimeResourcePackImpl extends AbstractRuntimeResourcePack impleme
    */
   @Override
   public InputSupplier<InputStream> openRoot(String... segments) {
-    Supplier<byte[]> supplier = this.root.get(Arrays.asList(segments));
-    if (supplier instanceof ImmediateResourceSupplier<?> immediateResourceSupplier) {
-      return immediateResourceSupplier.getImmediateInputSupplier();
-    }
-    if (supplier == null) {
-      return null;
-    }
-    return () -> new ByteArrayInputStream(supplier.get());
+    // most root resources are looked up with only one segment, such as "pack.mcmeta", which needs no joining
+    final String path = segments.length == 1 ? segments[0] : String.join("/", segments);
+    // root resources are not waited for, as missing ones such as "pack.png" are looked up in each reload
+    return toInputSupplier(this.root.get(path));
   }
 
   @Nullable
   @Override
   public InputSupplier<InputStream> open(ResourceType type, Identifier id) {
+    final CompletableFuture<Void> generation = backgroundGeneration;
     Supplier<byte[]> supplier = this.getSys(type).get(id);
+    if (supplier == null && awaitBackgroundGeneration(generation, id.getNamespace())) {
+      supplier = this.getSys(type).get(id);
+    }
+    // the resource may have been released after the last reload
+    if (supplier == null && releasedNamespaces.containsKey(type) && restoreReleasedResources(type)) {
+      supplier = this.getSys(type).get(id);
+    }
+    return toInputSupplier(supplier);
+  }
+
+  @Contract("null -> null; !null -> !null")
+  private static InputSupplier<InputStream> toInputSupplier(@Nullable Supplier<byte[]> supplier) {
     if (supplier instanceof ImmediateResourceSupplier<?> immediateResourceSupplier) {
       return immediateResourceSupplier.getImmediateInputSupplier();
     }
+    if (supplier instanceof OpenableResourceSupplier openableResourceSupplier) {
+      return openableResourceSupplier.inputSupplier();
+    }
 
     return supplier == null ? null : () -> new ByteArrayInputStream(supplier.get());
   }
 
   @Override
   public void findResources(ResourceType type, String namespace, String prefix, ResultConsumer consumer) {
-    for (Identifier identifier : this.getSys(type).keySet()) {
-      // deleted section: detecting "No resource found for..."
-      if (identifier.getNamespace().equals(namespace) && identifier.getPath().startsWith(prefix)) {
-        consumer.accept(identifier, open(type, identifier));
-      }
-    }
+    // deleted section: detecting "No resource found for..."
+    awaitBackgroundGeneration(backgroundGeneration, namespace);
+    if (releasedNamespaces.containsKey(type)) restoreReleasedResources(type);
+    this.getSys(type).findResources(namespace, prefix, (identifier, supplier) -> consumer.accept(identifier, toInputSupplier(supplier)));
+  }
+
+  /**
+   * Get the storage of the resource type, which is used by {@link ImmediateResourceIndex} so that immediate resources can be visited without iterating all resources, and be checked against resources of other packs. As resources of all namespaces are visited, it waits for the whole background generation, which is called in the prepare stage of reloads.
+   */
+  ResourceStorage getStorageForIndex(ResourceType type) {
+    awaitBackgroundGeneration(backgroundGeneration);
+    if (releasedNamespaces.containsKey(type)) restoreReleasedResources(type);
+    return this.getSys(type);
   }
 
   @Override
   public Set<String> getNamespaces(ResourceType type) {
-    Set<String> namespaces = new HashSet<>();
-    for (Identifier identifier : this.getSys(type).keySet()) {
-      namespaces.add(identifier.getNamespace());
+    final Set<String> namespaces = this.getSys(type).getNamespaces();
+    // called when resource managers are created, which should not wait for the background generation or the regeneration of released resources
+    final Set<String> released = releasedNamespaces.get(type);
+    final boolean generating = !backgroundGeneration.isDone();
+    if (released == null && !generating) {
+      return namespaces;
     }
-    return namespaces;
+    final Set<String> union = new HashSet<>(namespaces);
+    if (released != null) union.addAll(released);
+    if (generating) union.addAll(backgroundNamespaces);
+    return union;
   }
 
   /**
@@ -548,7 +1244,8 @@ public class RuntimeResourcePackImpl extends AbstractRuntimeResourcePack impleme
   public <T> T parseMetadata(ResourceMetadataReader<T> metaReader) {
     InputStream stream = null;
     try {
-      InputSupplier<InputStream> supplier = this.openRoot("pack.mcmeta");
+      // not using openRoot, which may wait for the background generation
+      InputSupplier<InputStream> supplier = toInputSupplier(this.root.get("pack.mcmeta"));
       if (supplier instanceof ImmediateInputSupplier.OfJson ofJson) {
         try {
           final JsonElement jsonElement = ofJson.jsonElement();
@@ -583,6 +1280,9 @@ public class RuntimeResourcePackImpl extends AbstractRuntimeResourcePack impleme
   @Override
   public void close() {
     LOGGER.debug("Closing Runtime Resource Pack {}.", getDisplayName().getString());
+    if (LOGGER.isDebugEnabled()) {
+      LOGGER.debug("Estimated memory of Runtime Resource Pack {}: {}", getDisplayName().getString(), getMemoryReport());
+    }
   }
 
   protected byte[] read(ZipEntry entry, InputStream stream) throws IOException {
@@ -593,11 +1293,11 @@ public class RuntimeResourcePackImpl extends AbstractRuntimeResourcePack impleme
     return data;
   }
 
-  protected void load(String fullPath, Map<Identifier, Supplier<byte[]>> map, byte[] data) {
+  protected void load(String fullPath, ResourceStorage map, byte[] data) {
     int sep = fullPath.indexOf('/');
     String namespace = fullPath.substring(0, sep);
     String path = fullPath.substring(sep + 1);
-    map.put(Identifier.of(namespace, path), () -> data);
+    map.put(Identifier.of(namespace, path), storePayload(data));
   }
 
   private void write(Path dir, Identifier identifier, Supplier<byte[]> dataSupplier) throws IOException {
@@ -649,6 +1349,10 @@ public class RuntimeResourcePackImpl extends AbstractRuntimeResourcePack impleme
       } finally {
         writer.flush();
       }
+    } else if (dataSupplier instanceof final PayloadSupplier payloadSupplier) {
+      payloadSupplier.writeTo(outputStream);
+    } else if (dataSupplier instanceof final LazyPayloadSupplier lazyPayloadSupplier) {
+      lazyPayloadSupplier.writeTo(outputStream);
     } else {
       outputStream.write(dataSupplier.get());
     }
@@ -656,19 +1360,38 @@ public class RuntimeResourcePackImpl extends AbstractRuntimeResourcePack impleme
 
   @Override
   public void clearResources(ResourceType side) {
-    getSys(side).clear();
+    targetSys(side).clear();
+    onResourcesRemoved();
   }
 
   @Override
   public void clearResources() {
-    assets.clear();
-    data.clear();
-    root.clear();
+    targetSys(ResourceType.CLIENT_RESOURCES).clear();
+    targetSys(ResourceType.SERVER_DATA).clear();
+    targetRoot().clear();
+    onResourcesRemoved();
   }
 
   @Override
   public void clearRootResources() {
-    root.clear();
+    targetRoot().clear();
+    onResourcesRemoved();
+  }
+
+  @Override
+  public void seal() {
+    targetSys(ResourceType.CLIENT_RESOURCES).seal();
+    targetSys(ResourceType.SERVER_DATA).seal();
+    synchronized (rootLock) {
+      if (root instanceof ConcurrentHashMap) {
+        root = Map.copyOf(root);
+      }
+    }
+  }
+
+  @Override
+  public boolean isSealed() {
+    return assets.isSealed() && data.isSealed() && !(root instanceof ConcurrentHashMap);
   }
 
   @Override
@@ -686,6 +1409,90 @@ public class RuntimeResourcePackImpl extends AbstractRuntimeResourcePack impleme
     return root.size();
   }
 
+  @Override
+  public CompressionStats getCompressionStats() {
+    long compressedEntries = 0, originalBytes = 0, compressedBytes = 0;
+    for (PayloadSupplier payloadSupplier : payloadSuppliers()) {
+      if (payloadSupplier.payload() instanceof ResourcePayload.Deflated deflated) {
+        compressedEntries++;
+        originalBytes += deflated.length();
+        compressedBytes += deflated.compressed().length;
+      }
+    }
+    return new CompressionStats(compressedEntries, originalBytes, compressedBytes);
+  }
+
+  @Override
+  public long getDeduplicatedBytes() {
+    final PayloadDeduplicator deduplicator = this.deduplicator;
+    return deduplicator == null ? 0 : deduplicator.getSavedBytes();
+  }
+
+  @Override
+  public LazyCacheStats getLazyCacheStats() {
+    return lazyCache.getStats();
+  }
+
+  @Override
+  public MemoryReport getMemoryReport() {
+    final MemoryReport.Builder builder = new MemoryReport.Builder();
+    final Set<PayloadSupplier> counted = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (ResourceType type : ResourceType.values()) {
+      final String side = type.getDirectory();
+      for (Map.Entry<Identifier, Supplier<byte[]>> entry : getSys(type).entries()) {
+        final Identifier id = entry.getKey();
+        final String path = id.getPath();
+        final int sep = path.indexOf('/');
+        final long keyBytes = ENTRY_OVERHEAD + 2L * (id.getNamespace().length() + path.length());
+        addSupplierMemory(builder, side, id.getNamespace(), sep < 0 ? "" : path.substring(0, sep), entry.getValue(), keyBytes, counted);
+      }
+    }
+    for (Map.Entry<String, Supplier<byte[]>> entry : root.entrySet()) {
+      final long keyBytes = ENTRY_OVERHEAD + 2L * entry.getKey().length();
+      addSupplierMemory(builder, "root", null, null, entry.getValue(), keyBytes, counted);
+    }
+    return builder.build(arena.getAllocatedBytes(), spiller.getSpilledBytes());
+  }
+
+  private static void addSupplierMemory(MemoryReport.Builder builder, String side, @Nullable String namespace, @Nullable String directory, Supplier<byte[]> supplier, long keyBytes, Set<PayloadSupplier> counted) {
+    final MemoryReport.Kind kind;
+    long bytes = keyBytes;
+    if (supplier instanceof PayloadSupplier payloadSupplier) {
+      kind = MemoryReport.Kind.EAGER;
+      if (counted.add(payloadSupplier)) bytes += payloadSupplier.payload().retainedBytes();
+    } else if (supplier instanceof LazyPayloadSupplier lazy) {
+      final PayloadSupplier materialized = lazy.getMaterialized();
+      if (materialized == null) {
+        kind = MemoryReport.Kind.LAZY_PENDING;
+        bytes += PENDING_SUPPLIER_BYTES;
+      } else {
+        kind = MemoryReport.Kind.LAZY_MATERIALIZED;
+        if (counted.add(materialized)) bytes += materialized.payload().retainedBytes();
+      }
+    } else if (supplier instanceof CachedLazySupplier cachedLazy) {
+      kind = MemoryReport.Kind.LAZY_CACHED;
+      bytes += PENDING_SUPPLIER_BYTES;
+      final byte[] cached = cachedLazy.getCached();
+      if (cached != null) bytes += 16L + cached.length;
+    } else if (supplier instanceof AsyncResourceSupplier async) {
+      kind = MemoryReport.Kind.ASYNC;
+      bytes += PENDING_SUPPLIER_BYTES;
+      if (async.future().isDone() && !async.future().isCancelled()) {
+        try {
+          bytes += 16L + async.future().get().length;
+        } catch (InterruptedException | ExecutionException ignored) {
+        }
+      }
+    } else if (supplier instanceof ImmediateResourceSupplier<?>) {
+      kind = MemoryReport.Kind.IMMEDIATE;
+      bytes += MemoryReport.NOMINAL_IMMEDIATE_BYTES;
+    } else {
+      kind = MemoryReport.Kind.EAGER;
+      bytes += PENDING_SUPPLIER_BYTES;
+    }
+    builder.add(side, namespace, directory, kind, bytes);
+  }
+
   @SuppressWarnings("removal")
   @Deprecated(since = "1.1.0", forRemoval = true)
   @Override
@@ -700,10 +1507,23 @@ public class RuntimeResourcePackImpl extends AbstractRuntimeResourcePack impleme
     return blockLootTableGenerator;
   }
 
-  protected Map<Identifier, Supplier<byte[]>> getSys(ResourceType side) {
+  protected ResourceStorage getSys(ResourceType side) {
     return side == ResourceType.CLIENT_RESOURCES ? this.assets : this.data;
   }
 
+  /**
+   * The copies of resources being regenerated with double buffering. The fields are {@code null} for the parts that are not regenerated.
+   */
+  private record Staging(@Nullable ResourceStorage assets, @Nullable ResourceStorage data, @Nullable Map<String, Supplier<byte[]>> root) {
+    private Iterable<Supplier<byte[]>> suppliers() {
+      final List<Iterable<Supplier<byte[]>>> suppliers = new ArrayList<>(3);
+      if (assets != null) suppliers.add(Iterables.transform(assets.entries(), Map.Entry::getValue));
+      if (data != null) suppliers.add(Iterables.transform(data.entries(), Map.Entry::getValue));
+      if (root != null) suppliers.add(root.values());
+      return Iterables.concat(suppliers);
+    }
+  }
+
   public static class Workaround extends RegistryBuilder {
     @SuppressWarnings({"rawtypes", "unchecked"})
     @Contract(pure = true)
@@ -0,0 +1,91 @@
+package pers.solid.brrp.v1.impl;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+import pers.solid.brrp.v1.api.RuntimeResourcePack;
+import pers.solid.brrp.v1.api.WatchdogStats;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * <p>The opt-in watchdog that times the evaluation of lazy resources and the waiting for async resources. When it happens on the render thread or the server thread and takes longer than the threshold, the game freezes for that long, so it is logged with the stack trace of the calling thread, which tells which code reads the resource.</p>
+ * <p>The watchdog is disabled by default, in which case the only cost is reading a volatile field. It can be enabled with {@link RuntimeResourcePack#setWatchdogThreshold(Duration)} or the system property {@code brrp.watchdog.thresholdMillis}.</p>
+ */
+@ApiStatus.Internal
+public final class SupplierWatchdog {
+  /**
+   * The threshold in nanoseconds, or a negative value if the watchdog is disabled.
+   */
+  private static volatile long thresholdNanos = TimeUnit.MILLISECONDS.toNanos(Long.getLong("brrp.watchdog.thresholdMillis", -1));
+  private static final LongAdder materializations = new LongAdder();
+  private static final LongAdder totalNanos = new LongAdder();
+  private static final LongAdder blockingEvents = new LongAdder();
+  private static @Nullable String slowestResource;
+  private static long slowestNanos;
+
+  private SupplierWatchdog() {
+  }
+
+  /**
+   * @param threshold The threshold above which blocking on the render thread or the server thread is logged, or {@code null} to disable the watchdog.
+   */
+  public static void setThreshold(@Nullable Duration threshold) {
+    thresholdNanos = threshold == null ? -1 : Math.max(0, threshold.toNanos());
+  }
+
+  public static boolean isEnabled() {
+    return thresholdNanos >= 0;
+  }
+
+  /**
+   * Evaluate the content, and time it if the watchdog is enabled.
+   *
+   * @param name     The function to get the name of the resource, which is called only when the watchdog is enabled.
+   * @param evaluate The function to evaluate the content.
+   */
+  public static <T> T time(Supplier<String> name, Supplier<T> evaluate) {
+    if (!isEnabled()) {
+      return evaluate.get();
+    }
+    final long startNanos = System.nanoTime();
+    try {
+      return evaluate.get();
+    } finally {
+      record(name.get(), System.nanoTime() - startNanos);
+    }
+  }
+
+  private static void record(String name, long nanos) {
+    materializations.increment();
+    totalNanos.add(nanos);
+    synchronized (SupplierWatchdog.class) {
+      if (slowestResource == null || nanos > slowestNanos) {
+        slowestResource = name;
+        slowestNanos = nanos;
+      }
+    }
+    final long thresholdNanos = SupplierWatchdog.thresholdNanos;
+    if (thresholdNanos >= 0 && nanos > thresholdNanos) {
+      final Thread thread = Thread.currentThread();
+      if (isGameThread(thread)) {
+        blockingEvents.increment();
+        RuntimeResourcePack.LOGGER.warn("Runtime resource {} blocked {} for {} ms.", name, thread.getName(), TimeUnit.NANOSECONDS.toMillis(nanos), new Throwable("Stack trace of the blocked thread"));
+      }
+    }
+  }
+
+  /**
+   * @return Whether the thread is the client render thread or the server main thread, which are named by vanilla. Checking the names avoids loading client classes on the dedicated server.
+   */
+  private static boolean isGameThread(Thread thread) {
+    final String name = thread.getName();
+    return name.equals("Render thread") || name.equals("Server thread");
+  }
+
+  public static synchronized WatchdogStats getStats() {
+    return new WatchdogStats(materializations.sum(), Duration.ofNanos(totalNanos.sum()), blockingEvents.sum(), slowestResource, Duration.ofNanos(slowestNanos));
+  }
+}
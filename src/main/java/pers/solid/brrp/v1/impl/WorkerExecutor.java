@@ -0,0 +1,222 @@
+package pers.solid.brrp.v1.impl;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.mojang.blaze3d.systems.RenderSystem;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.util.Util;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import pers.solid.brrp.v1.api.ExecutorMode;
+import pers.solid.brrp.v1.api.ExecutorStats;
+import pers.solid.brrp.v1.api.RuntimeResourcePack;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>The executor that runs async resources and tasks of runtime resource packs. It delegates to an executor chosen by {@link ExecutorMode}, which can be replaced at runtime, and limits the number of pending tasks. When too many tasks are pending, new tasks run in the thread that submits them, which slows down the producer instead of letting the queue grow without limit. However, tasks submitted by the render thread or by tasks of this executor are still queued, so that the render thread is not stalled by resource generation, and workers are not occupied by tasks other than the ones they are running.</p>
+ * <p>The initial settings can be specified with the system properties {@code brrp.executor.mode}, {@code brrp.executor.parallelism} and {@code brrp.executor.maxPendingTasks}.</p>
+ */
+@ApiStatus.Internal
+public final class WorkerExecutor extends AbstractExecutorService {
+  public static final int DEFAULT_PARALLELISM = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() - 1, 10));
+  public static final int DEFAULT_MAX_PENDING_TASKS = 1024;
+  /**
+   * The executor whose task is running in the current thread.
+   */
+  private static final ThreadLocal<WorkerExecutor> RUNNING_EXECUTOR = new ThreadLocal<>();
+  private final AtomicInteger pendingTasks = new AtomicInteger();
+  private final AtomicInteger activeTasks = new AtomicInteger();
+  private final LongAdder completedTasks = new LongAdder();
+  private final LongAdder callerRunTasks = new LongAdder();
+  private volatile Settings settings;
+  private volatile boolean shutdown;
+
+  /**
+   * @param mode            The initial mode.
+   * @param parallelism     The initial parallelism.
+   * @param maxPendingTasks The initial maximum number of pending tasks.
+   */
+  public WorkerExecutor(ExecutorMode mode, int parallelism, int maxPendingTasks) {
+    this.settings = new Settings(mode, parallelism, maxPendingTasks);
+  }
+
+  /**
+   * Create the executor with the settings specified by system properties, or default settings if not specified.
+   */
+  public static WorkerExecutor fromSystemProperties() {
+    ExecutorMode mode = ExecutorMode.FIXED_POOL;
+    final String modeName = System.getProperty("brrp.executor.mode");
+    if (modeName != null) {
+      try {
+        mode = ExecutorMode.valueOf(modeName.toUpperCase(Locale.ROOT));
+      } catch (IllegalArgumentException e) {
+        RuntimeResourcePack.LOGGER.warn("Unknown BRRP executor mode {}, using {} instead.", modeName, mode);
+      }
+    }
+    return new WorkerExecutor(mode, Math.max(1, Integer.getInteger("brrp.executor.parallelism", DEFAULT_PARALLELISM)), Math.max(1, Integer.getInteger("brrp.executor.maxPendingTasks", DEFAULT_MAX_PENDING_TASKS)));
+  }
+
+  /**
+   * Replace the executor. Tasks that are already submitted continue running on the previous executor, which is shut down after they complete if it is owned by BRRP.
+   */
+  public synchronized void configure(ExecutorMode mode, int parallelism, int maxPendingTasks) {
+    if (parallelism < 1 || maxPendingTasks < 1) {
+      throw new IllegalArgumentException("The parallelism and the maximum number of pending tasks should be positive.");
+    }
+    final Settings previous = this.settings;
+    this.settings = new Settings(mode, parallelism, maxPendingTasks);
+    previous.shutdown();
+    RuntimeResourcePack.LOGGER.info("BRRP executor is configured: mode {}, parallelism {}, max pending tasks {}.", mode, parallelism, maxPendingTasks);
+  }
+
+  public ExecutorStats getStats() {
+    final Settings settings = this.settings;
+    final int active = activeTasks.get();
+    return new ExecutorStats(settings.mode, settings.parallelism, settings.maxPendingTasks, Math.max(0, pendingTasks.get() - active), active, completedTasks.sum(), callerRunTasks.sum());
+  }
+
+  @Override
+  public void execute(@NotNull Runnable command) {
+    if (shutdown) {
+      throw new RejectedExecutionException("BRRP executor has been shut down.");
+    }
+    while (true) {
+      final Settings settings = this.settings;
+      if (pendingTasks.incrementAndGet() > settings.maxPendingTasks && mayRunInCaller()) {
+        pendingTasks.decrementAndGet();
+        callerRunTasks.increment();
+        command.run();
+        completedTasks.increment();
+        return;
+      }
+      try {
+        settings.delegate().execute(() -> {
+          activeTasks.incrementAndGet();
+          final WorkerExecutor previous = RUNNING_EXECUTOR.get();
+          RUNNING_EXECUTOR.set(this);
+          try {
+            command.run();
+          } finally {
+            RUNNING_EXECUTOR.set(previous);
+            activeTasks.decrementAndGet();
+            pendingTasks.decrementAndGet();
+            completedTasks.increment();
+          }
+        });
+        return;
+      } catch (RejectedExecutionException e) {
+        pendingTasks.decrementAndGet();
+        if (settings == this.settings) {
+          throw e;
+        }
+        // the executor is replaced concurrently, so try again with the new one
+      }
+    }
+  }
+
+  /**
+   * @return Whether the current thread may run the task itself when too many tasks are pending, which is not the case for the render thread and the threads running tasks of this executor.
+   */
+  private boolean mayRunInCaller() {
+    return RUNNING_EXECUTOR.get() != this && !isOnRenderThread();
+  }
+
+  private static boolean isOnRenderThread() {
+    return FabricLoader.getInstance().getEnvironmentType() == EnvType.CLIENT && RenderSystem.isOnRenderThread();
+  }
+
+  @Override
+  public void shutdown() {
+    shutdown = true;
+    settings.shutdown();
+  }
+
+  @Override
+  public @NotNull List<Runnable> shutdownNow() {
+    shutdown = true;
+    return settings.shutdownNow();
+  }
+
+  @Override
+  public boolean isShutdown() {
+    return shutdown;
+  }
+
+  @Override
+  public boolean isTerminated() {
+    return shutdown && pendingTasks.get() == 0;
+  }
+
+  @Override
+  public boolean awaitTermination(long timeout, @NotNull TimeUnit unit) throws InterruptedException {
+    final Settings settings = this.settings;
+    final ExecutorService delegate = settings.delegate;
+    return delegate != null && settings.owned() ? delegate.awaitTermination(timeout, unit) : isTerminated();
+  }
+
+  /**
+   * The settings of the executor, and the delegate executor created from them. The delegate is created lazily, so that the main worker executor of Minecraft is not initialized too early.
+   */
+  private static final class Settings {
+    private final ExecutorMode mode;
+    private final int parallelism;
+    private final int maxPendingTasks;
+    private volatile ExecutorService delegate;
+    private boolean shutdown;
+
+    private Settings(ExecutorMode mode, int parallelism, int maxPendingTasks) {
+      this.mode = mode;
+      this.parallelism = parallelism;
+      this.maxPendingTasks = maxPendingTasks;
+    }
+
+    private ExecutorService delegate() {
+      ExecutorService delegate = this.delegate;
+      if (delegate == null) {
+        synchronized (this) {
+          delegate = this.delegate;
+          if (delegate == null) {
+            if (shutdown) {
+              throw new RejectedExecutionException("The executor has been replaced.");
+            }
+            this.delegate = delegate = switch (mode) {
+              case FIXED_POOL -> Executors.newFixedThreadPool(parallelism, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("BRRP-Workers-%s").build());
+              case MAIN_WORKER -> Util.getMainWorkerExecutor();
+              case FORK_JOIN -> new ForkJoinPool(parallelism, pool -> {
+                final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("BRRP-Workers-" + thread.getPoolIndex());
+                return thread;
+              }, null, true);
+              case VIRTUAL_THREADS -> Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("BRRP-Virtual-", 0).factory());
+            };
+          }
+        }
+      }
+      return delegate;
+    }
+
+    /**
+     * @return Whether the delegate is owned by BRRP, which should be shut down when not used.
+     */
+    private boolean owned() {
+      return mode != ExecutorMode.MAIN_WORKER;
+    }
+
+    private synchronized void shutdown() {
+      shutdown = true;
+      if (delegate != null && owned()) {
+        delegate.shutdown();
+      }
+    }
+
+    private synchronized List<Runnable> shutdownNow() {
+      shutdown = true;
+      return delegate != null && owned() ? delegate.shutdownNow() : List.of();
+    }
+  }
+}
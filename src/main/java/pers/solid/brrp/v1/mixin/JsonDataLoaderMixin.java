@@ -1,47 +1,88 @@
 package pers.solid.brrp.v1.mixin;
 
 import com.google.common.collect.Iterators;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
 import com.llamalad7.mixinextras.injector.ModifyExpressionValue;
+import com.llamalad7.mixinextras.injector.wrapoperation.Operation;
+import com.llamalad7.mixinextras.injector.wrapoperation.WrapOperation;
+import com.llamalad7.mixinextras.sugar.Local;
 import net.minecraft.resource.*;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.profiler.Profiler;
+import org.jetbrains.annotations.Nullable;
 import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 import pers.solid.brrp.v1.BRRPMixins;
 import pers.solid.brrp.v1.api.ImmediateInputSupplier;
+import pers.solid.brrp.v1.impl.ImmediateResourceIndex;
 import pers.solid.brrp.v1.impl.ImmediateResourceLoader;
 
-import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 
 @Mixin(JsonDataLoader.class)
 public abstract class JsonDataLoaderMixin implements ImmediateResourceLoader {
+  /**
+   * The map that collects immediate resources skipped by {@link JsonDataLoader#load} on the current thread, so that they are found in the same scan as vanilla resources. It is {@code null} when {@code load} is not called by {@link JsonDataLoader#prepare}, such as when loading loot tables, whose immediate resources are handled by {@link ReloadableRegistriesMixin}.
+   */
+  @Unique
+  private static final ThreadLocal<Map<Identifier, Object>> collectingImmediateResources$brrp = new ThreadLocal<>();
+
   @Shadow
   @Final
   private String dataType;
 
+  /**
+   * The immediate resources collected in {@link JsonDataLoader#prepare}, which are taken by {@link #prepareImmediate$brrp}, unless {@link #acceptPreparedImmediate$brrp} is overridden.
+   */
+  @Unique
+  private volatile @Nullable Map<Identifier, Object> preparedImmediateResources$brrp;
+
+  @WrapOperation(method = "prepare(Lnet/minecraft/resource/ResourceManager;Lnet/minecraft/util/profiler/Profiler;)Ljava/util/Map;", at = @At(value = "INVOKE", target = "Lnet/minecraft/resource/JsonDataLoader;load(Lnet/minecraft/resource/ResourceManager;Ljava/lang/String;Lcom/google/gson/Gson;Ljava/util/Map;)V"))
+  private void collectImmediateResources(ResourceManager manager, String dataType, Gson gson, Map<Identifier, JsonElement> results, Operation<Void> original) {
+    final Map<Identifier, Object> map = new HashMap<>();
+    collectingImmediateResources$brrp.set(map);
+    try {
+      original.call(manager, dataType, gson, results);
+    } finally {
+      collectingImmediateResources$brrp.remove();
+    }
+    acceptPreparedImmediate$brrp(map);
+  }
+
+  @Override
+  public void acceptPreparedImmediate$brrp(Map<Identifier, Object> prepared) {
+    this.preparedImmediateResources$brrp = prepared;
+  }
+
   @ModifyExpressionValue(method = "load", at = @At(value = "INVOKE", target = "Ljava/util/Set;iterator()Ljava/util/Iterator;"))
-  private static Iterator<Map.Entry<Identifier, Resource>> skipResourcesWithImmediateValue(Iterator<Map.Entry<Identifier, Resource>> original) {
-    return Iterators.filter(original, entry -> !(((ResourceAccessor) entry.getValue()).getInputSupplier() instanceof ImmediateInputSupplier<?>));
+  private static Iterator<Map.Entry<Identifier, Resource>> skipResourcesWithImmediateValue(Iterator<Map.Entry<Identifier, Resource>> original, @Local ResourceFinder resourceFinder) {
+    final @Nullable Map<Identifier, Object> immediateResources = collectingImmediateResources$brrp.get();
+    return Iterators.filter(original, entry -> {
+      if (((ResourceAccessor) entry.getValue()).getInputSupplier() instanceof ImmediateInputSupplier<?> im) {
+        if (immediateResources != null) {
+          BRRPMixins.LOGGER.debug("BRRP: ImmediateInputSupplier found: {}", entry.getKey());
+          immediateResources.put(resourceFinder.toResourceId(entry.getKey()), im.resource());
+        }
+        return false;
+      }
+      return true;
+    });
   }
 
   @Override
   public Map<Identifier, Object> prepareImmediate$brrp(ResourceManager resourceManager, Profiler profiler) {
-    final Map<Identifier, Object> map = new HashMap<>();
-    ResourceFinder resourceFinder = ResourceFinder.json(dataType);
-
-    for (Map.Entry<Identifier, Resource> entry : resourceFinder.findResources(resourceManager).entrySet()) {
-      Identifier identifier = entry.getKey();
-      final Resource resource = entry.getValue();
-      final InputSupplier<InputStream> provider = ((ResourceAccessor) resource).getInputSupplier();
-      if (provider instanceof ImmediateInputSupplier<?> im) {
-        BRRPMixins.LOGGER.debug("BRRP: ImmediateInputSupplier found: {}", identifier);
-        map.put(resourceFinder.toResourceId(identifier), im.resource());
-      }
+    Map<Identifier, Object> map = this.preparedImmediateResources$brrp;
+    this.preparedImmediateResources$brrp = null;
+    if (map == null) {
+      // The vanilla preparation may be replaced by other mods, in which case resources have to be found in the index.
+      BRRPMixins.LOGGER.debug("BRRP: Immediate resources for data type {} are not collected during preparation, finding them in the index.", dataType);
+      map = ImmediateResourceIndex.find(resourceManager, dataType);
     }
 
     if (!map.isEmpty()) {
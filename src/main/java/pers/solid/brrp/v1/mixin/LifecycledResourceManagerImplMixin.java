@@ -4,17 +4,39 @@ import com.google.common.collect.Lists;
 import net.minecraft.resource.LifecycledResourceManagerImpl;
 import net.minecraft.resource.ResourcePack;
 import net.minecraft.resource.ResourceType;
+import org.jetbrains.annotations.Nullable;
+import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.ModifyVariable;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 import pers.solid.brrp.v1.BRRPMixins;
 import pers.solid.brrp.v1.PlatformBridge;
+import pers.solid.brrp.v1.impl.ImmediateResourceIndex;
+import pers.solid.brrp.v1.impl.LifecycledResourceManagerExtension;
+import pers.solid.brrp.v1.impl.ReloadBarrier;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Mixin(LifecycledResourceManagerImpl.class)
-public abstract class LifecycledResourceManagerImplMixin {
+public abstract class LifecycledResourceManagerImplMixin implements LifecycledResourceManagerExtension {
+  @Shadow
+  @Final
+  private List<ResourcePack> packs;
+
+  @Unique
+  private ResourceType type$brrp;
+
+  @Unique
+  private volatile @Nullable ImmediateResourceIndex immediateResourceIndex$brrp;
+
+  @Unique
+  private final AtomicReference<ReloadBarrier> reloadBarrier$brrp = new AtomicReference<>();
 
   @ModifyVariable(method = "<init>", at = @At("HEAD"), argsOnly = true)
   private static List<ResourcePack> registerRRPs(List<ResourcePack> packs, ResourceType type, List<ResourcePack> packs0) {
@@ -25,6 +47,37 @@ public abstract class LifecycledResourceManagerImplMixin {
     BRRPMixins.LOGGER.info("BRRP register - after vanilla");
     PlatformBridge.getInstance().postAfter(type, copy);
 
+    // runtime resource packs are prepared in the prepare stage of the reload, see ReloadBarrier
+    ReloadBarrier.begin(type, copy);
+
     return copy;
   }
+
+  /**
+   * Keep the barrier of async resources after the packs are scanned. It is waited for in the prepare stage of the reload, in {@link SimpleResourceReloadMixin}, instead of in the constructor, which runs in the render thread or the server thread.
+   */
+  @Inject(method = "<init>", at = @At("TAIL"))
+  private void takeReloadBarrier(ResourceType type, List<ResourcePack> packs, CallbackInfo ci) {
+    this.type$brrp = type;
+    this.reloadBarrier$brrp.set(ReloadBarrier.take());
+  }
+
+  @Override
+  public @Nullable ReloadBarrier takeReloadBarrier$brrp() {
+    return reloadBarrier$brrp.getAndSet(null);
+  }
+
+  @Override
+  public ImmediateResourceIndex getImmediateResourceIndex$brrp() {
+    ImmediateResourceIndex index = immediateResourceIndex$brrp;
+    if (index == null) {
+      synchronized (this) {
+        index = immediateResourceIndex$brrp;
+        if (index == null) {
+          immediateResourceIndex$brrp = index = ImmediateResourceIndex.build((LifecycledResourceManagerImpl) (Object) this, type$brrp, packs);
+        }
+      }
+    }
+    return index;
+  }
 }
\ No newline at end of file
@@ -2,7 +2,12 @@ package pers.solid.brrp.v1.mixin;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
-import com.google.common.collect.Multimap;
+import com.google.gson.JsonElement;
+import com.llamalad7.mixinextras.injector.wrapoperation.Operation;
+import com.llamalad7.mixinextras.injector.wrapoperation.WrapOperation;
+import com.llamalad7.mixinextras.sugar.Local;
+import com.llamalad7.mixinextras.sugar.Share;
+import com.llamalad7.mixinextras.sugar.ref.LocalRef;
 import net.minecraft.recipe.Recipe;
 import net.minecraft.recipe.RecipeEntry;
 import net.minecraft.recipe.RecipeManager;
@@ -11,61 +16,117 @@ import net.minecraft.registry.RegistryWrapper;
 import net.minecraft.resource.ResourceManager;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.profiler.Profiler;
+import org.jetbrains.annotations.Nullable;
 import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.ModifyVariable;
 import pers.solid.brrp.v1.BRRPMixins;
-import pers.solid.brrp.v1.api.RegistryResourceFunction;
+import pers.solid.brrp.v1.impl.ImmediateResourceEvaluator;
 import pers.solid.brrp.v1.impl.ImmediateResourceLoader;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
+/**
+ * Immediate recipes are evaluated in the prepare stage, and added to the builders that vanilla uses to build recipe maps, so that the maps are built only once and applying does not wait for the evaluation. If a recipe has the same identifier as an immediate recipe, the immediate recipe overrides it.
+ */
 @Mixin(RecipeManager.class)
 public abstract class RecipeManagerMixin implements ImmediateResourceLoader {
-  @Shadow
-  private boolean errored;
-
   @Shadow
   @Final
   private RegistryWrapper.WrapperLookup registryLookup;
 
-  @Shadow
-  private Multimap<RecipeType<?>, RecipeEntry<?>> recipesByType;
+  /**
+   * The immediate recipes evaluated in the prepare stage, which are taken when applying.
+   */
+  @Unique
+  private volatile @Nullable List<RecipeEntry<?>> preparedImmediateRecipes$brrp;
 
-  @Shadow
-  private Map<Identifier, RecipeEntry<?>> recipesById;
+  @Override
+  public boolean appliesImmediateWithVanilla$brrp() {
+    return true;
+  }
 
   @Override
-  public void applyImmediate$brrp(Map<Identifier, Object> map, ResourceManager manager, Profiler profiler) {
-    if (map.isEmpty()) {
-      return;
+  public CompletableFuture<Void> evaluatePreparedImmediate$brrp(ResourceManager manager, Profiler profiler, Executor prepareExecutor) {
+    return brrp$evaluateImmediateRecipes(prepareImmediate$brrp(manager, profiler), prepareExecutor).thenAccept(entries -> this.preparedImmediateRecipes$brrp = entries);
+  }
+
+  @Unique
+  private CompletableFuture<List<RecipeEntry<?>>> brrp$evaluateImmediateRecipes(Map<Identifier, Object> prepared, Executor executor) {
+    if (prepared.isEmpty()) {
+      return CompletableFuture.completedFuture(List.of());
     }
-    this.errored = false;
-    ImmutableMultimap.Builder<RecipeType<?>, RecipeEntry<?>> imRecipesByTypeBuilder = ImmutableMultimap.builder();
-    imRecipesByTypeBuilder.putAll(this.recipesByType);
-    ImmutableMap.Builder<Identifier, RecipeEntry<?>> imRecipesByIdBuilder = ImmutableMap.builder();
-    imRecipesByIdBuilder.putAll(this.recipesById);
+    final long startNanos = System.nanoTime();
+    return ImmediateResourceEvaluator.evaluate(prepared, registryLookup, executor, true).thenApply(evaluated -> {
+      final List<RecipeEntry<?>> entries = new ArrayList<>(evaluated.size());
+      for (Map.Entry<Identifier, Object> entry : evaluated) {
+        if (entry.getValue() instanceof final Recipe<?> recipe) {
+          entries.add(new RecipeEntry<>(entry.getKey(), recipe));
+        } else {
+          BRRPMixins.LOGGER.warn("BRRP: Immediate resource with id {} is not a recipe: {}, ignored", entry.getKey(), entry.getValue());
+        }
+      }
+      BRRPMixins.LOGGER.info("BRRP: Evaluated {} immediate recipes in {} ms", entries.size(), (System.nanoTime() - startNanos) / 1_000_000);
+      return entries;
+    });
+  }
 
-    int count = 0;
-    for (var entry : map.entrySet()) {
-      Identifier identifier = entry.getKey();
+  @ModifyVariable(method = "apply(Ljava/util/Map;Lnet/minecraft/resource/ResourceManager;Lnet/minecraft/util/profiler/Profiler;)V", at = @At("HEAD"), argsOnly = true)
+  private Map<Identifier, JsonElement> prepareImmediateRecipes(Map<Identifier, JsonElement> map, @Local(argsOnly = true) ResourceManager manager, @Local(argsOnly = true) Profiler profiler, @Share("immediateRecipes") LocalRef<List<RecipeEntry<?>>> immediateRecipes) {
+    List<RecipeEntry<?>> entries = this.preparedImmediateRecipes$brrp;
+    this.preparedImmediateRecipes$brrp = null;
+    if (entries == null) {
+      // The vanilla preparation may be replaced by other mods, in which case recipes have to be found and evaluated now, on the current thread.
+      entries = brrp$evaluateImmediateRecipes(prepareImmediate$brrp(manager, profiler), Runnable::run).join();
+    }
+    immediateRecipes.set(entries);
+    if (entries.isEmpty()) {
+      return map;
+    }
 
-      Object apply = entry.getValue();
-      if (apply instanceof RegistryResourceFunction<?> rf) {
-        apply = rf.apply(registryLookup);
-      }
-      if (apply instanceof final Recipe<?> recipe) {
-        RecipeEntry<?> recipeEntry = new RecipeEntry<>(identifier, recipe);
-        imRecipesByTypeBuilder.put(recipe.getType(), recipeEntry);
-        imRecipesByIdBuilder.put(identifier, recipeEntry);
-        count++;
-      } else {
-        BRRPMixins.LOGGER.warn("BRRP: Immediate resource with id {} is not a recipe: {}, ignored", identifier, apply);
+    // Immediate recipes override other recipes with the same identifiers, which are usually skipped when preparing, but may be added by other mods.
+    Map<Identifier, JsonElement> filtered = null;
+    for (RecipeEntry<?> entry : entries) {
+      if (map.containsKey(entry.id())) {
+        BRRPMixins.LOGGER.warn("BRRP: Recipe {} is overridden by an immediate recipe with the same id", entry.id());
+        if (filtered == null) {
+          filtered = new HashMap<>(map);
+        }
+        filtered.remove(entry.id());
       }
     }
+    return filtered == null ? map : filtered;
+  }
+
+  @WrapOperation(method = "apply(Ljava/util/Map;Lnet/minecraft/resource/ResourceManager;Lnet/minecraft/util/profiler/Profiler;)V", at = @At(value = "INVOKE", target = "Lcom/google/common/collect/ImmutableMap;builder()Lcom/google/common/collect/ImmutableMap$Builder;", remap = false))
+  private ImmutableMap.Builder<Identifier, RecipeEntry<?>> presizeRecipesById(Operation<ImmutableMap.Builder<Identifier, RecipeEntry<?>>> original, @Local(argsOnly = true) Map<Identifier, JsonElement> map, @Share("immediateRecipes") LocalRef<List<RecipeEntry<?>>> immediateRecipes) {
+    return ImmutableMap.builderWithExpectedSize(map.size() + immediateRecipes.get().size());
+  }
+
+  @WrapOperation(method = "apply(Ljava/util/Map;Lnet/minecraft/resource/ResourceManager;Lnet/minecraft/util/profiler/Profiler;)V", at = @At(value = "INVOKE", target = "Lcom/google/common/collect/ImmutableMultimap$Builder;build()Lcom/google/common/collect/ImmutableMultimap;", remap = false))
+  private ImmutableMultimap<RecipeType<?>, RecipeEntry<?>> addImmediateRecipesByType(ImmutableMultimap.Builder<RecipeType<?>, RecipeEntry<?>> builder, Operation<ImmutableMultimap<RecipeType<?>, RecipeEntry<?>>> original, @Share("immediateRecipes") LocalRef<List<RecipeEntry<?>>> immediateRecipes) {
+    for (RecipeEntry<?> entry : immediateRecipes.get()) {
+      builder.put(entry.value().getType(), entry);
+    }
+    return original.call(builder);
+  }
 
-    this.recipesByType = imRecipesByTypeBuilder.build();
-    this.recipesById = imRecipesByIdBuilder.build();
-    BRRPMixins.LOGGER.info("BRRP: Applied {} immediate recipes", count);
+  @WrapOperation(method = "apply(Ljava/util/Map;Lnet/minecraft/resource/ResourceManager;Lnet/minecraft/util/profiler/Profiler;)V", at = @At(value = "INVOKE", target = "Lcom/google/common/collect/ImmutableMap$Builder;build()Lcom/google/common/collect/ImmutableMap;", remap = false))
+  private ImmutableMap<Identifier, RecipeEntry<?>> addImmediateRecipesById(ImmutableMap.Builder<Identifier, RecipeEntry<?>> builder, Operation<ImmutableMap<Identifier, RecipeEntry<?>>> original, @Share("immediateRecipes") LocalRef<List<RecipeEntry<?>>> immediateRecipes) {
+    for (RecipeEntry<?> entry : immediateRecipes.get()) {
+      builder.put(entry.id(), entry);
+    }
+    if (!immediateRecipes.get().isEmpty()) {
+      BRRPMixins.LOGGER.info("BRRP: Applied {} immediate recipes", immediateRecipes.get().size());
+    }
+    return original.call(builder);
   }
 }
@@ -4,9 +4,6 @@ import com.llamalad7.mixinextras.sugar.Local;
 import net.minecraft.loot.LootDataType;
 import net.minecraft.registry.*;
 import net.minecraft.registry.entry.RegistryEntryInfo;
-import net.minecraft.resource.InputSupplier;
-import net.minecraft.resource.Resource;
-import net.minecraft.resource.ResourceFinder;
 import net.minecraft.resource.ResourceManager;
 import net.minecraft.util.Identifier;
 import org.spongepowered.asm.mixin.Final;
@@ -16,13 +13,13 @@ import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.ModifyArg;
 import pers.solid.brrp.v1.BRRPMixins;
-import pers.solid.brrp.v1.api.ImmediateInputSupplier;
-import pers.solid.brrp.v1.api.RegistryResourceFunction;
+import pers.solid.brrp.v1.impl.ImmediateResourceEvaluator;
+import pers.solid.brrp.v1.impl.ImmediateResourceIndex;
 import pers.solid.brrp.v1.impl.ReloadableWrapperLookup;
 
-import java.io.InputStream;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 
 @Mixin(ReloadableRegistries.class)
@@ -33,33 +30,32 @@ public abstract class ReloadableRegistriesMixin {
   private static RegistryEntryInfo DEFAULT_REGISTRY_ENTRY_INFO;
 
   @ModifyArg(method = "reload", at = @At(value = "INVOKE", target = "Ljava/util/stream/Stream;map(Ljava/util/function/Function;)Ljava/util/stream/Stream;"))
-  private static Function<? super LootDataType<?>, ? extends CompletableFuture<MutableRegistry<?>>> loadImmediateResources(Function<? super LootDataType<?>, ? extends CompletableFuture<MutableRegistry<?>>> mapper, @Local DynamicRegistryManager.Immutable immutable, @Local(argsOnly = true) ResourceManager resourceManager) {
+  private static Function<? super LootDataType<?>, ? extends CompletableFuture<MutableRegistry<?>>> loadImmediateResources(Function<? super LootDataType<?>, ? extends CompletableFuture<MutableRegistry<?>>> mapper, @Local DynamicRegistryManager.Immutable immutable, @Local(argsOnly = true) ResourceManager resourceManager, @Local(argsOnly = true) Executor prepareExecutor) {
     final ReloadableWrapperLookup wrapperLookup = new ReloadableWrapperLookup(immutable);
-    return type -> mapper.apply(type).thenApplyAsync(mutableRegistry -> {
+    return type -> mapper.apply(type).thenComposeAsync(mutableRegistry -> {
+      final long startNanos = System.nanoTime();
       String dataType = RegistryKeys.getPath(type.registryKey());
-      ResourceFinder resourceFinder = ResourceFinder.json(dataType);
-
-      for (Map.Entry<Identifier, Resource> entry : resourceFinder.findResources(resourceManager).entrySet()) {
-        Identifier identifier = entry.getKey();
-
-        final Resource resource = entry.getValue();
-        final InputSupplier<InputStream> provider = ((ResourceAccessor) resource).getInputSupplier();
-        if (provider instanceof ImmediateInputSupplier<?> im) {
-          BRRPMixins.LOGGER.debug("BRRP: ImmediateInputSupplier found: {}", identifier);
-          brrp$prepareImmediate(type, mutableRegistry, resourceFinder.toResourceId(identifier), im.resource(), wrapperLookup);
-        }
+      final Map<Identifier, Object> resources = ImmediateResourceIndex.find(resourceManager, dataType);
+      if (resources.isEmpty()) {
+        return CompletableFuture.completedFuture(mutableRegistry);
       }
 
-      return mutableRegistry;
-    });
+      // Functions are evaluated in parallel, but the registry is not thread-safe, so results are added in a single pass.
+      return ImmediateResourceEvaluator.evaluate(resources, wrapperLookup, prepareExecutor, false).thenApply(results -> {
+        final long evaluatedNanos = System.nanoTime();
+        for (Map.Entry<Identifier, Object> entry : results) {
+          brrp$addImmediate(type, mutableRegistry, entry.getKey(), entry.getValue());
+        }
+        final long endNanos = System.nanoTime();
+        BRRPMixins.LOGGER.info("BRRP: Loaded {} immediate resources for data type {} in {} ms (evaluating {} ms, adding {} ms)", results.size(), dataType, (endNanos - startNanos) / 1_000_000, (evaluatedNanos - startNanos) / 1_000_000, (endNanos - evaluatedNanos) / 1_000_000);
+        return mutableRegistry;
+      });
+    }, prepareExecutor);
   }
 
   @Unique
   @SuppressWarnings("unchecked")
-  private static <T> void brrp$prepareImmediate(LootDataType<T> type, MutableRegistry<?> mutableRegistry, Identifier identifier, Object content, ReloadableWrapperLookup wrapperLookup) {
-    if (content instanceof RegistryResourceFunction<?> rf) {
-      content = rf.apply(wrapperLookup);
-    }
+  private static <T> void brrp$addImmediate(LootDataType<T> type, MutableRegistry<?> mutableRegistry, Identifier identifier, Object content) {
     BRRPMixins.LOGGER.debug("BRRP: Adding immediate resource {} to registry {}", identifier, mutableRegistry.getKey().getValue());
     ((MutableRegistry<T>) mutableRegistry).add(RegistryKey.of(type.registryKey(), identifier), (T) content, DEFAULT_REGISTRY_ENTRY_INFO);
   }
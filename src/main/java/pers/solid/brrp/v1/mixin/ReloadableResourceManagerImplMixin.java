@@ -0,0 +1,45 @@
+package pers.solid.brrp.v1.mixin;
+
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.resource.LifecycledResourceManager;
+import net.minecraft.resource.ReloadableResourceManagerImpl;
+import net.minecraft.resource.ResourcePack;
+import net.minecraft.resource.ResourceReload;
+import net.minecraft.resource.ResourceType;
+import net.minecraft.util.Unit;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+import pers.solid.brrp.v1.impl.RuntimeResourcePackImpl;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Notifies runtime resource packs when a client resource reload completes, so that they can release resources that are no longer read.
+ */
+@Environment(EnvType.CLIENT)
+@Mixin(ReloadableResourceManagerImpl.class)
+public abstract class ReloadableResourceManagerImplMixin {
+  @Shadow
+  @Final
+  private ResourceType type;
+
+  @Shadow
+  private LifecycledResourceManager activeManager;
+
+  @Inject(method = "reload", at = @At("RETURN"))
+  private void notifyReloadCompleted(Executor prepareExecutor, Executor applyExecutor, CompletableFuture<Unit> initialStage, List<ResourcePack> packs, CallbackInfoReturnable<ResourceReload> cir) {
+    final ResourceType type = this.type;
+    final List<RuntimeResourcePackImpl> runtimeResourcePacks = activeManager.streamResourcePacks().filter(RuntimeResourcePackImpl.class::isInstance).map(RuntimeResourcePackImpl.class::cast).toList();
+    if (runtimeResourcePacks.isEmpty()) {
+      return;
+    }
+    cir.getReturnValue().whenComplete().thenRun(() -> runtimeResourcePacks.forEach(pack -> pack.onReloadCompleted(type)));
+  }
+}
@@ -1,21 +1,40 @@
 package pers.solid.brrp.v1.mixin;
 
 import com.google.common.collect.ImmutableMap;
-import net.minecraft.advancement.*;
+import com.google.gson.JsonElement;
+import com.llamalad7.mixinextras.injector.wrapoperation.Operation;
+import com.llamalad7.mixinextras.injector.wrapoperation.WrapOperation;
+import com.llamalad7.mixinextras.sugar.Local;
+import com.llamalad7.mixinextras.sugar.Share;
+import com.llamalad7.mixinextras.sugar.ref.LocalRef;
+import net.minecraft.advancement.Advancement;
+import net.minecraft.advancement.AdvancementEntry;
 import net.minecraft.registry.RegistryWrapper;
 import net.minecraft.resource.ResourceManager;
 import net.minecraft.server.ServerAdvancementLoader;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.profiler.Profiler;
+import org.jetbrains.annotations.Nullable;
 import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.ModifyVariable;
 import pers.solid.brrp.v1.BRRPMixins;
-import pers.solid.brrp.v1.api.RegistryResourceFunction;
+import pers.solid.brrp.v1.impl.ImmediateResourceEvaluator;
 import pers.solid.brrp.v1.impl.ImmediateResourceLoader;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
+/**
+ * Immediate advancements are evaluated and validated in the prepare stage, and added to the builder that vanilla uses to build the advancement map, so that applying does not wait for the evaluation, and the advancement tree is built and positioned only once, together with other advancements. If an advancement has the same identifier as an immediate advancement, the immediate advancement overrides it.
+ */
 @Mixin(ServerAdvancementLoader.class)
 public abstract class ServerAdvancementLoaderMixin implements ImmediateResourceLoader {
   @Shadow
@@ -25,48 +44,88 @@ public abstract class ServerAdvancementLoaderMixin implements ImmediateResourceL
   @Shadow
   protected abstract void validate(Identifier id, Advancement advancement);
 
-  @Shadow
-  private Map<Identifier, AdvancementEntry> advancements;
+  /**
+   * The immediate advancements evaluated and validated in the prepare stage, which are taken when applying.
+   */
+  @Unique
+  private volatile @Nullable List<AdvancementEntry> preparedImmediateAdvancements$brrp;
 
-  @Shadow
-  private AdvancementManager manager;
+  @Override
+  public boolean appliesImmediateWithVanilla$brrp() {
+    return true;
+  }
 
   @Override
-  public void applyImmediate$brrp(Map<Identifier, Object> map, ResourceManager manager, Profiler profiler) {
-    if (map.isEmpty()) {
-      return;
+  public CompletableFuture<Void> evaluatePreparedImmediate$brrp(ResourceManager manager, Profiler profiler, Executor prepareExecutor) {
+    return brrp$evaluateImmediateAdvancements(prepareImmediate$brrp(manager, profiler), prepareExecutor).thenAccept(entries -> this.preparedImmediateAdvancements$brrp = entries);
+  }
+
+  @Unique
+  private CompletableFuture<List<AdvancementEntry>> brrp$evaluateImmediateAdvancements(Map<Identifier, Object> prepared, Executor executor) {
+    if (prepared.isEmpty()) {
+      return CompletableFuture.completedFuture(List.of());
     }
-    ImmutableMap.Builder<Identifier, AdvancementEntry> builder = ImmutableMap.builder();
-    builder.putAll(this.advancements);
 
-    int count = 0;
-    for (var entry : map.entrySet()) {
-      Identifier id = entry.getKey();
-      Object resource = entry.getValue();
-      try {
-        Object apply = resource;
-        if (resource instanceof RegistryResourceFunction<?> rf) {
-          apply = rf.apply(registryLookup);
-        }
-        if (!(apply instanceof Advancement advancement)) {
-          BRRPMixins.LOGGER.warn("BRRP: immediate resource with id {} is not an advancement: {}", id, apply);
-          continue;
-        }
+    // Advancements are evaluated and validated in parallel, and failures are logged and skipped like vanilla.
+    final long startNanos = System.nanoTime();
+    return ImmediateResourceEvaluator.evaluate(prepared, registryLookup, executor, true, (id, resource) -> {
+      if (resource instanceof Advancement advancement) {
         this.validate(id, advancement);
-        builder.put(id, new AdvancementEntry(id, advancement));
-        count++;
-      } catch (Exception var6x) {
-        BRRPMixins.LOGGER.error("BRRP: Parsing error loading custom immediate advancement {}: {}", id, var6x.getMessage());
       }
+    }).thenApply(evaluated -> {
+      final List<AdvancementEntry> entries = new ArrayList<>(evaluated.size());
+      for (Map.Entry<Identifier, Object> entry : evaluated) {
+        if (entry.getValue() instanceof Advancement advancement) {
+          entries.add(new AdvancementEntry(entry.getKey(), advancement));
+        } else {
+          BRRPMixins.LOGGER.warn("BRRP: immediate resource with id {} is not an advancement: {}", entry.getKey(), entry.getValue());
+        }
+      }
+      BRRPMixins.LOGGER.info("BRRP: Evaluated {} immediate advancements in {} ms", entries.size(), (System.nanoTime() - startNanos) / 1_000_000);
+      return entries;
+    });
+  }
+
+  @ModifyVariable(method = "apply(Ljava/util/Map;Lnet/minecraft/resource/ResourceManager;Lnet/minecraft/util/profiler/Profiler;)V", at = @At("HEAD"), argsOnly = true)
+  private Map<Identifier, JsonElement> prepareImmediateAdvancements(Map<Identifier, JsonElement> map, @Local(argsOnly = true) ResourceManager manager, @Local(argsOnly = true) Profiler profiler, @Share("immediateAdvancements") LocalRef<List<AdvancementEntry>> immediateAdvancements) {
+    List<AdvancementEntry> entries = this.preparedImmediateAdvancements$brrp;
+    this.preparedImmediateAdvancements$brrp = null;
+    if (entries == null) {
+      // The vanilla preparation may be replaced by other mods, in which case advancements have to be found and evaluated now, on the current thread.
+      entries = brrp$evaluateImmediateAdvancements(prepareImmediate$brrp(manager, profiler), Runnable::run).join();
+    }
+    immediateAdvancements.set(entries);
+    if (entries.isEmpty()) {
+      return map;
     }
-    this.advancements = builder.buildOrThrow();
-    this.manager.addAll(this.advancements.values());
-    BRRPMixins.LOGGER.info("BRRP: Applied {} immediate advancements", count);
 
-    for (PlacedAdvancement placedAdvancement : this.manager.getRoots()) {
-      if (placedAdvancement.getAdvancementEntry().value().display().isPresent()) {
-        AdvancementPositioner.arrangeForTree(placedAdvancement);
+    // Immediate advancements override other advancements with the same identifiers, which are usually skipped when preparing, but may be added by other mods.
+    Map<Identifier, JsonElement> filtered = null;
+    for (AdvancementEntry entry : entries) {
+      if (map.containsKey(entry.id())) {
+        BRRPMixins.LOGGER.warn("BRRP: Advancement {} is overridden by an immediate advancement with the same id", entry.id());
+        if (filtered == null) {
+          filtered = new HashMap<>(map);
+        }
+        filtered.remove(entry.id());
       }
     }
+    return filtered == null ? map : filtered;
+  }
+
+  @WrapOperation(method = "apply(Ljava/util/Map;Lnet/minecraft/resource/ResourceManager;Lnet/minecraft/util/profiler/Profiler;)V", at = @At(value = "INVOKE", target = "Lcom/google/common/collect/ImmutableMap;builder()Lcom/google/common/collect/ImmutableMap$Builder;", remap = false))
+  private ImmutableMap.Builder<Identifier, AdvancementEntry> presizeAdvancements(Operation<ImmutableMap.Builder<Identifier, AdvancementEntry>> original, @Local(argsOnly = true) Map<Identifier, JsonElement> map, @Share("immediateAdvancements") LocalRef<List<AdvancementEntry>> immediateAdvancements) {
+    return ImmutableMap.builderWithExpectedSize(map.size() + immediateAdvancements.get().size());
+  }
+
+  @WrapOperation(method = "apply(Ljava/util/Map;Lnet/minecraft/resource/ResourceManager;Lnet/minecraft/util/profiler/Profiler;)V", at = @At(value = "INVOKE", target = "Lcom/google/common/collect/ImmutableMap$Builder;buildOrThrow()Lcom/google/common/collect/ImmutableMap;", remap = false))
+  private ImmutableMap<Identifier, AdvancementEntry> addImmediateAdvancements(ImmutableMap.Builder<Identifier, AdvancementEntry> builder, Operation<ImmutableMap<Identifier, AdvancementEntry>> original, @Share("immediateAdvancements") LocalRef<List<AdvancementEntry>> immediateAdvancements) {
+    for (AdvancementEntry entry : immediateAdvancements.get()) {
+      builder.put(entry.id(), entry);
+    }
+    if (!immediateAdvancements.get().isEmpty()) {
+      BRRPMixins.LOGGER.info("BRRP: Applied {} immediate advancements", immediateAdvancements.get().size());
+    }
+    return original.call(builder);
   }
 }
@@ -0,0 +1,33 @@
+package pers.solid.brrp.v1.mixin;
+
+import net.minecraft.resource.ResourceManager;
+import net.minecraft.resource.ResourceReloader;
+import net.minecraft.resource.SimpleResourceReload;
+import net.minecraft.util.Unit;
+import org.jetbrains.annotations.Nullable;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.ModifyVariable;
+import pers.solid.brrp.v1.impl.LifecycledResourceManagerExtension;
+import pers.solid.brrp.v1.impl.ReloadBarrier;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+@Mixin(SimpleResourceReload.class)
+public abstract class SimpleResourceReloadMixin {
+  /**
+   * Defer the preparation of reloaders until the async resources of runtime resource packs are evaluated, which are waited for in the prepare executor, so that the thread starting the reload is not blocked.
+   */
+  @ModifyVariable(method = "start", at = @At("HEAD"), argsOnly = true, ordinal = 0)
+  private static Executor awaitAsyncResources(Executor prepareExecutor, ResourceManager manager, List<ResourceReloader> reloaders, Executor prepareExecutor0, Executor applyExecutor, CompletableFuture<Unit> initialStage, boolean profiled) {
+    if (manager instanceof LifecycledResourceManagerExtension extension) {
+      final @Nullable ReloadBarrier barrier = extension.takeReloadBarrier$brrp();
+      if (barrier != null) {
+        return barrier.gate(prepareExecutor);
+      }
+    }
+    return prepareExecutor;
+  }
+}
@@ -1,6 +1,8 @@
 package pers.solid.brrp.v1.mixin;
 
 import com.llamalad7.mixinextras.injector.ModifyReturnValue;
+import com.llamalad7.mixinextras.injector.wrapoperation.Operation;
+import com.llamalad7.mixinextras.injector.wrapoperation.WrapOperation;
 import com.llamalad7.mixinextras.sugar.Local;
 import net.minecraft.resource.ResourceManager;
 import net.minecraft.resource.ResourceReloader;
@@ -11,13 +13,23 @@ import org.spongepowered.asm.mixin.injection.At;
 import pers.solid.brrp.v1.impl.ImmediateResourceLoader;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.Executor;
+import java.util.function.Function;
 
 @Mixin(SinglePreparationResourceReloader.class)
 public abstract class SinglePreparationResourceReloaderMixin {
+  @WrapOperation(method = "reload", at = @At(value = "INVOKE", target = "Ljava/util/concurrent/CompletableFuture;thenCompose(Ljava/util/function/Function;)Ljava/util/concurrent/CompletableFuture;", remap = false))
+  private CompletableFuture<Object> evaluateImmediateResourceBeforePrepared(CompletableFuture<Object> prepared, Function<Object, CompletionStage<Object>> whenPrepared, Operation<CompletableFuture<Object>> original, @Local(argsOnly = true) ResourceManager manager, @Local(argsOnly = true, ordinal = 0) Profiler prepareProfiler, @Local(argsOnly = true, ordinal = 0) Executor prepareExecutor) {
+    if (this instanceof ImmediateResourceLoader im && im.appliesImmediateWithVanilla$brrp()) {
+      prepared = prepared.thenCompose(result -> im.evaluatePreparedImmediate$brrp(manager, prepareProfiler, prepareExecutor).thenApply(unused -> result));
+    }
+    return original.call(prepared, whenPrepared);
+  }
+
   @ModifyReturnValue(method = "reload", at = @At("RETURN"))
   private CompletableFuture<Void> prepareForImmediateResource(CompletableFuture<Void> original, @Local(argsOnly = true) ResourceReloader.Synchronizer synchronizer, @Local(argsOnly = true) ResourceManager manager, @Local(argsOnly = true, ordinal = 0) Profiler prepareProfiler, @Local(argsOnly = true, ordinal = 1) Profiler applyProfiler, @Local(argsOnly = true, ordinal = 0) Executor prepareExecutor, @Local(argsOnly = true, ordinal = 1) Executor applyExecutor) {
-    if (this instanceof ImmediateResourceLoader im) {
+    if (this instanceof ImmediateResourceLoader im && !im.appliesImmediateWithVanilla$brrp()) {
       return original.thenCompose(unused -> CompletableFuture.supplyAsync(() -> im.prepareImmediate$brrp(manager, prepareProfiler), prepareExecutor)
           .thenCompose(synchronizer::whenPrepared)
           .thenAcceptAsync(map -> im.applyImmediate$brrp(map, manager, applyProfiler), applyExecutor));
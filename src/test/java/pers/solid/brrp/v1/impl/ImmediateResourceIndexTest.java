@@ -0,0 +1,64 @@
+package pers.solid.brrp.v1.impl;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import net.minecraft.util.Identifier;
+import org.junit.jupiter.api.Test;
+import pers.solid.brrp.v1.api.ImmediateResourceSupplier;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImmediateResourceIndexTest {
+  private static final Identifier ID = Identifier.of("test", "recipe/stone.json");
+  private static final Function<Identifier, Optional<Object>> NOT_LOOKED_UP = id -> fail("Resource " + id + " should not be looked up in the resource manager.");
+
+  private static JsonObject json(String value) {
+    final JsonObject jsonObject = new JsonObject();
+    jsonObject.add("value", new JsonPrimitive(value));
+    return jsonObject;
+  }
+
+  private static ResourceStorage immediate(JsonObject jsonObject) {
+    final ResourceStorage storage = new ResourceStorage();
+    storage.put(ID, new ImmediateResourceSupplier.OfJson.Impl(jsonObject));
+    return storage;
+  }
+
+  private static ResourceStorage normal() {
+    final ResourceStorage storage = new ResourceStorage();
+    storage.put(ID, () -> new byte[0]);
+    return storage;
+  }
+
+  @Test
+  public void immediateResourceIsIndexed() {
+    final JsonObject resource = json("lower");
+    final Map<Identifier, Object> resources = ImmediateResourceIndex.resolve(Arrays.asList(null, immediate(resource)), NOT_LOOKED_UP);
+    assertSame(resource, resources.get(ID));
+  }
+
+  @Test
+  public void higherRuntimePackOverridesImmediateResource() {
+    final Map<Identifier, Object> resources = ImmediateResourceIndex.resolve(Arrays.asList(null, immediate(json("lower")), normal()), NOT_LOOKED_UP);
+    assertFalse(resources.containsKey(ID));
+  }
+
+  @Test
+  public void higherImmediateResourceIsUsed() {
+    final JsonObject higher = json("higher");
+    final Map<Identifier, Object> resources = ImmediateResourceIndex.resolve(Arrays.asList(immediate(json("lower")), normal(), immediate(higher)), NOT_LOOKED_UP);
+    assertSame(higher, resources.get(ID));
+  }
+
+  @Test
+  public void resourceBelowNormalPackIsLookedUp() {
+    final JsonObject resource = json("lower");
+    assertSame(resource, ImmediateResourceIndex.resolve(Arrays.asList(immediate(resource), null), id -> Optional.of(resource)).get(ID));
+    assertFalse(ImmediateResourceIndex.resolve(Arrays.asList(immediate(resource), null), id -> Optional.empty()).containsKey(ID));
+  }
+}
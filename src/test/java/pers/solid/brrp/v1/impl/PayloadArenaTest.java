@@ -0,0 +1,54 @@
+package pers.solid.brrp.v1.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PayloadArenaTest {
+  private static byte[] content(byte value, int length) {
+    final byte[] bytes = new byte[length];
+    Arrays.fill(bytes, value);
+    return bytes;
+  }
+
+  private static PayloadSupplier allocate(PayloadArena arena, byte[] content) {
+    final ResourcePayload payload = arena.allocate(ResourcePayload.of(content, -1));
+    assertInstanceOf(ResourcePayload.InArena.class, payload);
+    return new PayloadSupplier(payload);
+  }
+
+  @Test
+  public void streamOfRemovedResourceIsNotOverwritten() throws IOException {
+    final PayloadArena arena = new PayloadArena();
+    final byte[] removed = content((byte) 1, 1024);
+    final PayloadSupplier supplier = allocate(arena, removed);
+    try (InputStream stream = supplier.openStream()) {
+      arena.reset(List.of());
+      allocate(arena, content((byte) 2, 1024));
+      assertArrayEquals(removed, stream.readAllBytes());
+    }
+  }
+
+  @Test
+  public void compactedResourceKeepsContent() throws IOException {
+    final PayloadArena arena = new PayloadArena();
+    final byte[] kept = content((byte) 1, 1024);
+    final PayloadSupplier keptSupplier = allocate(arena, kept);
+    allocate(arena, content((byte) 2, PayloadArena.SLAB_SIZE - 1024));
+    final ResourcePayload before = keptSupplier.payload();
+    try (InputStream stream = keptSupplier.openStream()) {
+      // most of the slab is no longer in use, so the kept content is moved into a new slab
+      arena.reset(List.of(keptSupplier));
+      assertNotSame(before, keptSupplier.payload());
+      allocate(arena, content((byte) 3, 1024));
+      assertArrayEquals(kept, stream.readAllBytes());
+      assertArrayEquals(kept, keptSupplier.get());
+      assertArrayEquals(kept, before.toByteArray());
+    }
+  }
+}
@@ -0,0 +1,43 @@
+package pers.solid.brrp.v1.impl;
+
+import net.minecraft.util.Identifier;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResourceStorageTest {
+  private static List<Identifier> find(ResourceStorage storage, String namespace, String prefix) {
+    final List<Identifier> found = new ArrayList<>();
+    storage.findResources(namespace, prefix, (id, supplier) -> found.add(id));
+    return found;
+  }
+
+  @Test
+  public void sealedStorageFindsResources() {
+    final ResourceStorage storage = new ResourceStorage();
+    storage.put(Identifier.of("test", "models/b.json"), () -> new byte[0]);
+    storage.put(Identifier.of("test", "models/a.json"), () -> new byte[0]);
+    storage.put(Identifier.of("test", "textures/a.png"), () -> new byte[0]);
+    storage.seal();
+    assertTrue(storage.isSealed());
+    assertEquals(List.of(Identifier.of("test", "models/a.json"), Identifier.of("test", "models/b.json")), find(storage, "test", "models/"));
+    assertEquals(Set.of("test"), storage.getNamespaces());
+    assertEquals(3, storage.size());
+  }
+
+  @Test
+  public void unsealedStorageRebuildsIndex() {
+    final ResourceStorage storage = new ResourceStorage();
+    storage.put(Identifier.of("test", "models/a.json"), () -> new byte[0]);
+    storage.seal();
+    assertTrue(storage.putIfAbsent(Identifier.of("test", "models/b.json"), id -> () -> new byte[0]));
+    assertFalse(storage.isSealed());
+    assertFalse(storage.putIfAbsent(Identifier.of("test", "models/a.json"), id -> fail("The existing resource should not be created again.")));
+    assertEquals(List.of(Identifier.of("test", "models/a.json"), Identifier.of("test", "models/b.json")), find(storage, "test", "models/"));
+    assertEquals(Set.of("test"), storage.getNamespaces());
+  }
+}